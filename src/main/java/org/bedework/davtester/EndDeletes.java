@@ -59,8 +59,8 @@ public class EndDeletes extends DavTesterBase {
     return "END-DELETES";
   }
 
-  public void add(final String uri,
-                  final Request req) {
+  public synchronized void add(final String uri,
+                               final Request req) {
     if (deletions.containsKey(uri)) {
       return;
     }
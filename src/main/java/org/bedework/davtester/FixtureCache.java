@@ -0,0 +1,249 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.bedework.davtester.Utils.fileToString;
+
+/** Cache of data files after substitution. Entries are keyed by
+ * path, file modification time and a fingerprint made up of the
+ * current values of the substitution variables the file refers to.
+ * A change to the file or to any of those variables results in a
+ * miss.
+ *
+ * <p>Files containing $uidrandom: or referring to variables whose
+ * values themselves contain substitutions are not cached.
+ *
+ * <p>Each entry may also hold parsed forms of the data, e.g. a
+ * filtered calendar. Callers are responsible for copying those
+ * before modifying them.
+ */
+public class FixtureCache {
+  private static final int maxFiles = 200;
+  private static final int maxFixtures = 500;
+
+  private final Serverinfo serverInfo;
+
+  private long hits;
+  private long misses;
+
+  /* The raw file and the variables it refers to
+   */
+  private static class RawFile {
+    final long lastModified;
+    final String text;
+    final List<String> vars;
+    final boolean cacheable;
+
+    RawFile(final long lastModified,
+            final String text) {
+      this.lastModified = lastModified;
+      this.text = text;
+
+      vars = findVars(text);
+      cacheable = !text.contains("$uidrandom:");
+    }
+  }
+
+  /** Data after substitution plus any parsed forms.
+   */
+  public static class Fixture {
+    private final String data;
+    private byte[] bytes;
+    private Map<String, Object> parsed;
+
+    Fixture(final String data) {
+      this.data = data;
+    }
+
+    public String getData() {
+      return data;
+    }
+
+    /**
+     * @return the data UTF-8 encoded - do not modify
+     */
+    public synchronized byte[] getBytes() {
+      if (bytes == null) {
+        bytes = data.getBytes(StandardCharsets.UTF_8);
+      }
+
+      return bytes;
+    }
+
+    /**
+     * @param key identifies the parser and any options, e.g. filters
+     * @param parser called on a miss with the data
+     * @return cached or newly parsed object
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getParsed(final String key,
+                                        final Function<String, T> parser) {
+      if (parsed == null) {
+        parsed = new HashMap<>();
+      }
+
+      var res = (T)parsed.get(key);
+      if (res == null) {
+        res = parser.apply(data);
+        parsed.put(key, res);
+      }
+
+      return res;
+    }
+  }
+
+  private final Map<String, RawFile> files =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, RawFile> eldest) {
+              return size() > maxFiles;
+            }
+          };
+
+  private final Map<String, Fixture> fixtures =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Fixture> eldest) {
+              return size() > maxFixtures;
+            }
+          };
+
+  FixtureCache(final Serverinfo serverInfo) {
+    this.serverInfo = serverInfo;
+  }
+
+  /** Read the file and apply subs and extrasubs.
+   *
+   * @param path of data file
+   * @return fixture - never null (file errors throw)
+   */
+  public synchronized Fixture get(final String path) {
+    final var raw = raw(path);
+    final var lastModified = raw.lastModified;
+
+    if (!raw.cacheable) {
+      misses++;
+      return new Fixture(substitute(raw.text));
+    }
+
+    final var fingerprint = fingerprint(raw);
+    if (fingerprint == null) {
+      misses++;
+      return new Fixture(substitute(raw.text));
+    }
+
+    final var key = path + '\0' + lastModified + '\0' + fingerprint;
+
+    var fixture = fixtures.get(key);
+    if (fixture != null) {
+      hits++;
+      return fixture;
+    }
+
+    misses++;
+    fixture = new Fixture(substitute(raw.text));
+    fixtures.put(key, fixture);
+
+    return fixture;
+  }
+
+  /**
+   * @param path of data file
+   * @return variables the file refers to - except $now. ones
+   */
+  public synchronized List<String> variables(final String path) {
+    return raw(path).vars;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private RawFile raw(final String path) {
+    final var f = new File(path);
+    final var lastModified = f.lastModified();
+
+    var raw = files.get(path);
+    if ((raw == null) || (raw.lastModified != lastModified)) {
+      raw = new RawFile(lastModified, fileToString(f));
+      files.put(path, raw);
+    }
+
+    return raw;
+  }
+
+  private String substitute(final String text) {
+    return serverInfo.extrasubs(serverInfo.subs(text));
+  }
+
+  /* Values of the referenced variables or null if any of them would
+     need further substitution.
+   */
+  private String fingerprint(final RawFile raw) {
+    final var sb = new StringBuilder();
+
+    // Requests may be running on other threads
+    synchronized (serverInfo) {
+      for (final var var: raw.vars) {
+        final var val = serverInfo.subsKvs.getOnlyString(var);
+        final var extraVal = serverInfo.extrasubsKvs.getOnlyString(var);
+
+        if (((val != null) && (val.indexOf('$') >= 0)) ||
+                ((extraVal != null) && (extraVal.indexOf('$') >= 0))) {
+          return null;
+        }
+
+        sb.append(var)
+          .append('=')
+          .append(val)
+          .append('\0')
+          .append(extraVal)
+          .append('\0');
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /* Variables are "$" up to and including the next ":" - as in
+     Serverinfo.propertyReplace.
+   */
+  public static List<String> findVars(final String text) {
+    final var vars = new ArrayList<String>();
+    int pos = text.indexOf('$');
+
+    while (pos >= 0) {
+      final int end = text.indexOf(':', pos);
+      if (end < 0) {
+        break;
+      }
+
+      final var var = text.substring(pos, end + 1).trim();
+      if (var.startsWith("$now.")) {
+        // Fixed for the run - nothing to fingerprint
+      } else if (!vars.contains(var)) {
+        vars.add(var);
+      }
+
+      pos = text.indexOf('$', end + 1);
+    }
+
+    return vars;
+  }
+}
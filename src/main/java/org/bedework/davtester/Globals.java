@@ -14,18 +14,60 @@ import java.util.Map;
 public class Globals {
   private boolean all;
 
+  private boolean asyncObservers;
+
   private String basedir = "src/main/rsrc/";
 
+  private String certPassword;
+
+  private int dnsCacheTtl;
+
   private String dtds = "$basedir:dtds";
 
   private List<String> excludes;
 
+  private int hedgePercentile = 95;
+
+  private boolean hedgeRequests;
+
+  private String httpEngine;
+
+  private int httpEngineThreads = 0;
+
   private boolean httptrace;
 
+  private String jsonOutput;
+
+  private String junitOutput;
+
+  private String metricsFile;
+
+  private int metricsInterval = 10;
+
+  private int metricsPort = 0;
+
+  private int mockLatency = 0;
+
+  private int mockResponses = 0;
+
+  private boolean mockServer;
+
+  private String observerQueuePolicy = "block";
+
+  private int observerQueueSize = 1024;
+
   private List<String> observers;
 
   private String outputName;
 
+  private String perfBaseline;
+
+  private String perfSaveBaseline;
+
+  private int perfSlowest = 10;
+
+  private int perfThreshold = 20;
+
   private String posttest;
 
   private String pretest;
@@ -36,14 +78,34 @@ public class Globals {
 
   private boolean printResponse = true;
 
+  private int protocolCaptureSize = 0;
+
+  private String protocolSpillDir;
+
   private boolean random = true;
 
+  private String recordFile;
+
+  private String replayFile;
+
+  private int replayPort = 0;
+
+  private int requestCompression = 0;
+
   private String resDir = "$basedir:";
 
+  private boolean responseCompression = true;
+
+  private String scheduler = "strict";
+
+  private int schedulerThreads = 4;
+
   private String serverInfo = "$basedir:server/serverinfo.xml";
 
   private boolean ssl;
 
+  private int startBatchSize = 0;
+
   private boolean stopOnFail;
 
   private String subdir;
@@ -54,6 +116,10 @@ public class Globals {
 
   private String testsDir = "$basedir:tests";
 
+  private int tlsSessionCacheSize = 0;
+
+  private int tlsSessionTimeout = 0;
+
   private boolean waitCountDump;
 
   public void setAll(final boolean val) {
@@ -64,6 +130,14 @@ public class Globals {
     return all;
   }
 
+  public void setAsyncObservers(final boolean val) {
+    asyncObservers = val;
+  }
+
+  public boolean getAsyncObservers() {
+    return asyncObservers;
+  }
+
   public void setBasedir(final String val) {
     basedir = val;
   }
@@ -72,6 +146,22 @@ public class Globals {
     return basedir;
   }
 
+  public void setCertPassword(final String val) {
+    certPassword = val;
+  }
+
+  public String getCertPassword() {
+    return certPassword;
+  }
+
+  public void setDnsCacheTtl(final int val) {
+    dnsCacheTtl = val;
+  }
+
+  public int getDnsCacheTtl() {
+    return dnsCacheTtl;
+  }
+
   public void setDtds(final String val) {
     dtds = val;
   }
@@ -88,6 +178,38 @@ public class Globals {
     return excludes;
   }
 
+  public void setHedgePercentile(final int val) {
+    hedgePercentile = val;
+  }
+
+  public int getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  public void setHedgeRequests(final boolean val) {
+    hedgeRequests = val;
+  }
+
+  public boolean getHedgeRequests() {
+    return hedgeRequests;
+  }
+
+  public void setHttpEngine(final String val) {
+    httpEngine = val;
+  }
+
+  public String getHttpEngine() {
+    return httpEngine;
+  }
+
+  public void setHttpEngineThreads(final int val) {
+    httpEngineThreads = val;
+  }
+
+  public int getHttpEngineThreads() {
+    return httpEngineThreads;
+  }
+
   public void setHttptrace(final boolean val) {
     httptrace = val;
   }
@@ -96,6 +218,86 @@ public class Globals {
     return httptrace;
   }
 
+  public void setJsonOutput(final String val) {
+    jsonOutput = val;
+  }
+
+  public String getJsonOutput() {
+    return jsonOutput;
+  }
+
+  public void setJunitOutput(final String val) {
+    junitOutput = val;
+  }
+
+  public String getJunitOutput() {
+    return junitOutput;
+  }
+
+  public void setMetricsFile(final String val) {
+    metricsFile = val;
+  }
+
+  public String getMetricsFile() {
+    return metricsFile;
+  }
+
+  public void setMetricsInterval(final int val) {
+    metricsInterval = val;
+  }
+
+  public int getMetricsInterval() {
+    return metricsInterval;
+  }
+
+  public void setMetricsPort(final int val) {
+    metricsPort = val;
+  }
+
+  public int getMetricsPort() {
+    return metricsPort;
+  }
+
+  public void setMockLatency(final int val) {
+    mockLatency = val;
+  }
+
+  public int getMockLatency() {
+    return mockLatency;
+  }
+
+  public void setMockResponses(final int val) {
+    mockResponses = val;
+  }
+
+  public int getMockResponses() {
+    return mockResponses;
+  }
+
+  public void setMockServer(final boolean val) {
+    mockServer = val;
+  }
+
+  public boolean getMockServer() {
+    return mockServer;
+  }
+
+  public void setObserverQueuePolicy(final String val) {
+    observerQueuePolicy = val;
+  }
+
+  public String getObserverQueuePolicy() {
+    return observerQueuePolicy;
+  }
+
+  public void setObserverQueueSize(final int val) {
+    observerQueueSize = val;
+  }
+
+  public int getObserverQueueSize() {
+    return observerQueueSize;
+  }
+
   public void setObservers(final List<String> val) {
     observers = val;
   }
@@ -112,6 +314,38 @@ public class Globals {
     return outputName;
   }
 
+  public void setPerfBaseline(final String val) {
+    perfBaseline = val;
+  }
+
+  public String getPerfBaseline() {
+    return perfBaseline;
+  }
+
+  public void setPerfSaveBaseline(final String val) {
+    perfSaveBaseline = val;
+  }
+
+  public String getPerfSaveBaseline() {
+    return perfSaveBaseline;
+  }
+
+  public void setPerfSlowest(final int val) {
+    perfSlowest = val;
+  }
+
+  public int getPerfSlowest() {
+    return perfSlowest;
+  }
+
+  public void setPerfThreshold(final int val) {
+    perfThreshold = val;
+  }
+
+  public int getPerfThreshold() {
+    return perfThreshold;
+  }
+
   public void setPosttest(final String val) {
     posttest = val;
   }
@@ -152,6 +386,22 @@ public class Globals {
     return printResponse;
   }
 
+  public void setProtocolCaptureSize(final int val) {
+    protocolCaptureSize = val;
+  }
+
+  public int getProtocolCaptureSize() {
+    return protocolCaptureSize;
+  }
+
+  public void setProtocolSpillDir(final String val) {
+    protocolSpillDir = val;
+  }
+
+  public String getProtocolSpillDir() {
+    return protocolSpillDir;
+  }
+
   public void setRandom(final boolean val) {
     random = val;
   }
@@ -160,6 +410,38 @@ public class Globals {
     return random;
   }
 
+  public void setRecordFile(final String val) {
+    recordFile = val;
+  }
+
+  public String getRecordFile() {
+    return recordFile;
+  }
+
+  public void setReplayFile(final String val) {
+    replayFile = val;
+  }
+
+  public String getReplayFile() {
+    return replayFile;
+  }
+
+  public void setReplayPort(final int val) {
+    replayPort = val;
+  }
+
+  public int getReplayPort() {
+    return replayPort;
+  }
+
+  public void setRequestCompression(final int val) {
+    requestCompression = val;
+  }
+
+  public int getRequestCompression() {
+    return requestCompression;
+  }
+
   public void setResDir(final String val) {
     resDir = val;
   }
@@ -168,6 +450,30 @@ public class Globals {
     return resDir;
   }
 
+  public void setResponseCompression(final boolean val) {
+    responseCompression = val;
+  }
+
+  public boolean getResponseCompression() {
+    return responseCompression;
+  }
+
+  public void setScheduler(final String val) {
+    scheduler = val;
+  }
+
+  public String getScheduler() {
+    return scheduler;
+  }
+
+  public void setSchedulerThreads(final int val) {
+    schedulerThreads = val;
+  }
+
+  public int getSchedulerThreads() {
+    return schedulerThreads;
+  }
+
   public void setServerInfo(final String val) {
     serverInfo = val;
   }
@@ -184,6 +490,14 @@ public class Globals {
     return ssl;
   }
 
+  public void setStartBatchSize(final int val) {
+    startBatchSize = val;
+  }
+
+  public int getStartBatchSize() {
+    return startBatchSize;
+  }
+
   public void setStopOnFail(final boolean val) {
     stopOnFail = val;
   }
@@ -224,6 +538,22 @@ public class Globals {
     return testsDir;
   }
 
+  public void setTlsSessionCacheSize(final int val) {
+    tlsSessionCacheSize = val;
+  }
+
+  public int getTlsSessionCacheSize() {
+    return tlsSessionCacheSize;
+  }
+
+  public void setTlsSessionTimeout(final int val) {
+    tlsSessionTimeout = val;
+  }
+
+  public int getTlsSessionTimeout() {
+    return tlsSessionTimeout;
+  }
+
   public void setWaitCountDump(final boolean val) {
     waitCountDump = val;
   }
@@ -236,26 +566,59 @@ public class Globals {
     final ToString ts = new ToString(this);
 
     return ts.append("all", getAll())
+             .append("asyncObservers", getAsyncObservers())
              .append("baseDir", getBasedir())
+             .append("certPassword", getCertPassword())
+             .append("dnsCacheTtl", getDnsCacheTtl())
              .append("dtds", getDtds())
              .append("excludes", getExcludes())
+             .append("hedgePercentile", getHedgePercentile())
+             .append("hedgeRequests", getHedgeRequests())
+             .append("httpEngine", getHttpEngine())
+             .append("httpEngineThreads", getHttpEngineThreads())
              .append("httptrace", getHttptrace())
+             .append("jsonOutput", getJsonOutput())
+             .append("junitOutput", getJunitOutput())
+             .append("metricsFile", getMetricsFile())
+             .append("metricsInterval", getMetricsInterval())
+             .append("metricsPort", getMetricsPort())
+             .append("mockLatency", getMockLatency())
+             .append("mockResponses", getMockResponses())
+             .append("mockServer", getMockServer())
+             .append("observerQueuePolicy", getObserverQueuePolicy())
+             .append("observerQueueSize", getObserverQueueSize())
              .append("outputName", getOutputName())
+             .append("perfBaseline", getPerfBaseline())
+             .append("perfSaveBaseline", getPerfSaveBaseline())
+             .append("perfSlowest", getPerfSlowest())
+             .append("perfThreshold", getPerfThreshold())
              .append("posttest", getPosttest())
              .append("pretest", getPretest())
              .append("printDetailsOnFail", getPrintDetailsOnFail())
              .append("printRequest", getPrintRequest())
              .append("printResponse", getPrintResponse())
              .append("printResponse", getPrintResponse())
+             .append("protocolCaptureSize", getProtocolCaptureSize())
+             .append("protocolSpillDir", getProtocolSpillDir())
              .append("random", getRandom())
+             .append("recordFile", getRecordFile())
+             .append("replayFile", getReplayFile())
+             .append("replayPort", getReplayPort())
+             .append("requestCompression", getRequestCompression())
              .append("resDir", getResDir())
+             .append("responseCompression", getResponseCompression())
+             .append("scheduler", getScheduler())
+             .append("schedulerThreads", getSchedulerThreads())
              .append("serverInfo", getServerInfo())
              .append("ssl", getSsl())
+             .append("startBatchSize", getStartBatchSize())
              .append("stopOnFail", getStopOnFail())
              .append("subdir", getSubdir())
              .append("tests", getTests())
              .append("testsets", getTestsets())
              .append("testsDir", getTestsDir())
+             .append("tlsSessionCacheSize", getTlsSessionCacheSize())
+             .append("tlsSessionTimeout", getTlsSessionTimeout())
              .append("waitCountDump", getWaitCountDump())
              .toString();
   }
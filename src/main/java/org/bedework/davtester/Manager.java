@@ -16,6 +16,16 @@
 package org.bedework.davtester;
 
 import org.bedework.davtester.observers.BaseResultsObserver;
+import org.bedework.davtester.observers.ObserverQueue;
+import org.bedework.davtester.observers.ResultEvent;
+import org.bedework.davtester.request.CachingDnsResolver;
+import org.bedework.davtester.request.HttpEngine;
+import org.bedework.davtester.request.RequestGuard;
+import org.bedework.davtester.request.TimedRequestExecutor;
+import org.bedework.davtester.request.TlsContexts;
+import org.bedework.davtester.server.ExchangeArchive;
+import org.bedework.davtester.server.MockDavServer;
+import org.bedework.davtester.server.ReplayServer;
 import org.bedework.util.logging.BwLogger;
 import org.bedework.util.logging.Logged;
 import org.bedework.util.misc.Util;
@@ -31,14 +41,20 @@ import org.apache.http.impl.client.HttpClients;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
@@ -64,6 +80,32 @@ public class Manager implements Logged {
 
   public Serverinfo serverInfo;
 
+  public FixtureCache fixtures;
+
+  public final Metrics metrics = new Metrics();
+
+  /* Request stats and phase times for the current suite and file
+     and the whole run */
+  private RequestStats suiteStats = new RequestStats();
+  private RequestStats fileStats = new RequestStats();
+  private final RequestStats runStats = new RequestStats();
+
+  /* True if some observer wants exchange messages */
+  private boolean recordExchanges;
+
+  /* Non-null if replaying a recording */
+  private ReplayServer replayServer;
+
+  /* Non-null if running against the embedded mock server */
+  private MockDavServer mockServer;
+
+  /* Non-null if protocol dumps are held per test */
+  private ProtocolCapture protocolCapture;
+
+  /* Set while a scheduled test is running on the thread */
+  private final ThreadLocal<List<ResultEvent>> heldMessages =
+          new ThreadLocal<>();
+
   private Path testsDirPath;
 
   public Path resDirPath;
@@ -77,13 +119,30 @@ public class Manager implements Logged {
 
   //boolean memUsage;
   //String postgresLog;
-  FileWriter logFile;
+  Writer logFile;
+
+  private final Writer stdout =
+          new BufferedWriter(new OutputStreamWriter(System.out));
 
   private CloseableHttpClient httpClient;
+  private final Map<String, CloseableHttpClient> certClients =
+          new HashMap<>();
+  private TlsContexts tls;
+  private RequestGuard requestGuard;
+  private CachingDnsResolver dnsResolver;
+  private HttpEngine httpEngine;
+  private final Map<String, HttpEngine> unixEngines = new HashMap<>();
   final CredentialsProvider credsProvider = new BasicCredentialsProvider();
 
   private final List<BaseResultsObserver> observers = new ArrayList<>();
-  private final KeyVals results = new KeyVals();
+
+  /* Non-null if observers run asynchronously */
+  private List<ObserverQueue> observerQueues;
+
+  /* The log is flushed after these messages are processed */
+  private static final Set<String> flushingMessages =
+          Set.of("start", "load", "testProgress", "testFile",
+                 "testSuite", "finish");
 
   /**
    * Call after settings are read.
@@ -94,10 +153,37 @@ public class Manager implements Logged {
     try {
       serverInfo = new Serverinfo(this,
                                   globals.getBasedir());
+      fixtures = new FixtureCache(serverInfo);
+
+      if ((globals.getMetricsPort() > 0) ||
+              (globals.getMetricsFile() != null)) {
+        final Path metricsFile;
+        if (globals.getMetricsFile() == null) {
+          metricsFile = null;
+        } else {
+          metricsFile = Paths.get(subs(globals.getMetricsFile()));
+        }
+
+        metrics.publish(globals.getMetricsPort(), metricsFile,
+                        globals.getMetricsInterval());
+      }
+
+      if (globals.getProtocolCaptureSize() > 0) {
+        final Path spillDir;
+        if (globals.getProtocolSpillDir() == null) {
+          spillDir = null;
+        } else {
+          spillDir = Paths.get(subs(globals.getProtocolSpillDir()));
+        }
+
+        protocolCapture =
+                new ProtocolCapture(globals.getProtocolCaptureSize(),
+                                    spillDir);
+      }
 
       if (!StringUtils.isEmpty(globals.getOutputName())) {
-        logFile = new FileWriter(
-                new File(subs(globals.getOutputName())));
+        logFile = new BufferedWriter(new FileWriter(
+                new File(subs(globals.getOutputName()))));
       }
 
       if (globals.getDtds() != null) {
@@ -165,6 +251,36 @@ public class Manager implements Logged {
         }
       }
 
+      for (final var obs: observers) {
+        if (obs.wantsExchanges()) {
+          recordExchanges = true;
+          break;
+        }
+      }
+
+      if (globals.getReplayFile() != null) {
+        replayServer = new ReplayServer(
+                Paths.get(subs(globals.getReplayFile())),
+                globals.getReplayPort());
+        replayServer.start();
+      } else if (globals.getMockServer()) {
+        mockServer = new MockDavServer(0,
+                                       globals.getMockLatency(),
+                                       globals.getMockResponses());
+        mockServer.start();
+      }
+
+      if (globals.getAsyncObservers()) {
+        final var policy = ObserverQueue.Policy.fromString(
+                globals.getObserverQueuePolicy());
+        observerQueues = new ArrayList<>(observers.size());
+
+        for (final var obs: observers) {
+          observerQueues.add(new ObserverQueue(
+                  obs, globals.getObserverQueueSize(), policy));
+        }
+      }
+
       return readXML(subs(globals.getServerInfo()),
                      normTestsPaths(testNames),
                      globals.getSsl(),
@@ -178,25 +294,95 @@ public class Manager implements Logged {
     return serverInfo.subs(val);
   }
 
-  public CloseableHttpClient getUnauthHttpClient() {
-    if (httpClient == null) {
-      final HttpClientBuilder clb = HttpClients.custom();
-      clb.setDefaultCredentialsProvider(credsProvider);
-      httpClient = clb.build();
+  /**
+   * @return the engine used to send requests
+   */
+  public HttpEngine getHttpEngine() {
+    if (httpEngine == null) {
+      httpEngine = HttpEngine.forName(this, globals.getHttpEngine());
     }
 
+    return httpEngine;
+  }
+
+  /**
+   * @param afunix path of a unix socket - null or empty for none
+   * @return the engine used to send requests to that socket or the
+   *         default engine
+   */
+  public synchronized HttpEngine getHttpEngine(final String afunix) {
+    if (StringUtils.isEmpty(afunix)) {
+      return getHttpEngine();
+    }
+
+    return unixEngines.computeIfAbsent(
+            afunix, p -> HttpEngine.forUnixSocket(this, p));
+  }
+
+  /**
+   * @return applies the timeouts and hedging to requests
+   */
+  public synchronized RequestGuard getRequestGuard() {
+    if (requestGuard == null) {
+      requestGuard = new RequestGuard(this, serverInfo.timeouts);
+    }
+
+    return requestGuard;
+  }
+
+  /**
+   * @return ssl contexts for the server and client certificates
+   */
+  public synchronized TlsContexts getTls() {
+    if (tls == null) {
+      Path certdir = null;
+      if ((serverInfo != null) &&
+              !StringUtils.isEmpty(serverInfo.certdir)) {
+        certdir = Paths.get(subs(globals.getBasedir()))
+                       .resolve(serverInfo.certdir);
+      }
+
+      tls = new TlsContexts(certdir,
+                            globals.getCertPassword(),
+                            globals.getTlsSessionCacheSize(),
+                            globals.getTlsSessionTimeout(),
+                            metrics);
+    }
+
+    return tls;
+  }
+
+  public CloseableHttpClient getUnauthHttpClient() {
+    return getUnauthHttpClient(null);
+  }
+
+  /**
+   * @param cert client certificate - null or empty for none
+   * @return client with no credentials set
+   */
+  public CloseableHttpClient getUnauthHttpClient(final String cert) {
+    final var cl = client(cert);
+
     credsProvider.clear();
 
-    return httpClient;
+    return cl;
   }
 
   public CloseableHttpClient getHttpClient(final String user,
                                            final String pw) {
-    if (httpClient == null) {
-      final HttpClientBuilder clb = HttpClients.custom();
-      clb.setDefaultCredentialsProvider(credsProvider);
-      httpClient = clb.build();
-    }
+    return getHttpClient(user, pw, null);
+  }
+
+  /**
+   * @param user null for the server default
+   * @param pw null for the server default
+   * @param cert client certificate - null or empty for none
+   * @return client with the credentials set
+   */
+  public CloseableHttpClient getHttpClient(final String user,
+                                           final String pw,
+                                           final String cert) {
+    final var cl = client(cert);
 
     String u = user;
     String p = pw;
@@ -215,7 +401,54 @@ public class Manager implements Logged {
               new UsernamePasswordCredentials(u,
                                               p));
     }
-    return httpClient;
+    return cl;
+  }
+
+  /* One client for requests without a certificate and one for each
+     client certificate - all share the credentials provider.
+   */
+  private synchronized CloseableHttpClient client(final String cert) {
+    if (StringUtils.isEmpty(cert)) {
+      if (httpClient == null) {
+        httpClient = newHttpClient(null);
+      }
+
+      return httpClient;
+    }
+
+    return certClients.computeIfAbsent(cert, this::newHttpClient);
+  }
+
+  private CloseableHttpClient newHttpClient(final String cert) {
+    final HttpClientBuilder clb = HttpClients.custom();
+    clb.setDefaultCredentialsProvider(credsProvider);
+    clb.setRequestExecutor(new TimedRequestExecutor());
+    clb.setSSLSocketFactory(getTls().socketFactory(cert));
+    // Responses are decoded by the request - see ContentCoding
+    clb.disableContentCompression();
+    clb.setDefaultRequestConfig(serverInfo.timeouts.requestConfig());
+
+    final var dnsCacheTtl = globals.getDnsCacheTtl();
+    if (dnsCacheTtl > 0) {
+      clb.setDnsResolver(getDnsResolver(dnsCacheTtl));
+    }
+
+    // Allow for start requests sent together
+    final var batchSize = globals.getStartBatchSize();
+    if (batchSize > 2) {
+      clb.setMaxConnPerRoute(batchSize);
+      clb.setMaxConnTotal(Math.max(20, batchSize));
+    }
+
+    return clb.build();
+  }
+
+  private synchronized CachingDnsResolver getDnsResolver(final int ttl) {
+    if (dnsResolver == null) {
+      dnsResolver = new CachingDnsResolver(ttl);
+    }
+
+    return dnsResolver;
   }
 
   public void setPretest(final String path) {
@@ -272,19 +505,54 @@ public class Manager implements Logged {
     return serverInfo.features.contains(feature);
   }
 
-  public void logit(final String str) {
+  /** Output is buffered - flushed after most observer messages
+   * and at the end of the run.
+   *
+   * @param str line to log
+   */
+  public synchronized void logit(final String str) {
     try {
       if (logFile != null) {
-        logFile.write(str + "\n");
+        logFile.write(str);
+        logFile.write('\n');
       }
-      System.out.println(str);
+      stdout.write(str);
+      stdout.write(System.lineSeparator());
     } catch (final Throwable t) {
       throw new RuntimeException(t);
     }
   }
 
-  public Object getResults() {
-    return results;
+  public synchronized void flushLog() {
+    try {
+      if (logFile != null) {
+        logFile.flush();
+      }
+      stdout.flush();
+    } catch (final Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  /** Wait for any queued observer messages to be processed then
+   * flush the log.
+   */
+  public void drainObservers() {
+    if (observerQueues != null) {
+      for (final var oq: observerQueues) {
+        oq.drain();
+      }
+    }
+
+    flushLog();
+  }
+
+  /**
+   * @param event from observer
+   * @return true if the log should be flushed after this event
+   */
+  public boolean flushesLog(final ResultEvent event) {
+    return flushingMessages.contains(event.getMessage());
   }
 
   public void loadObserver(final String observerName) {
@@ -309,90 +577,233 @@ public class Manager implements Logged {
     }
   }
 
-  public void message(final String message, final KeyVals args) {
-    for (final BaseResultsObserver obs: observers) {
-      obs.process(message, args);
+  public void message(final ResultEvent event) {
+    final var held = heldMessages.get();
+    if (held != null) {
+      held.add(event);
+      return;
+    }
+
+    if (observerQueues != null) {
+      for (final var oq: observerQueues) {
+        oq.post(event);
+      }
+
+      return;
+    }
+
+    // Start requests may be run concurrently
+    synchronized (observers) {
+      for (final BaseResultsObserver obs: observers) {
+        obs.process(event);
+      }
+    }
+
+    if (flushesLog(event)) {
+      flushLog();
     }
   }
 
-  public void testProgress(final int count, final int total) {
-    final KeyVals results = new KeyVals();
-    results.put("count", count);
-    results.put("total", total);
+  /**
+   * @return true if exchange should be called for each request
+   */
+  public boolean recordingExchanges() {
+    return recordExchanges;
+  }
+
+  /**
+   * @param entry a complete request and response
+   */
+  public void exchange(final ExchangeArchive.Entry entry) {
+    message(new ResultEvent.Exchange(entry));
+  }
+
+  /** Hold messages sent on this thread until released - so that the
+   * output of tests run alongside each other is not interleaved.
+   */
+  public void holdMessages() {
+    heldMessages.set(new ArrayList<>());
+  }
+
+  /**
+   * @return messages held on this thread since holdMessages - they
+   *         are no longer held
+   */
+  public List<ResultEvent> releaseMessages() {
+    final var res = heldMessages.get();
+    heldMessages.remove();
 
-    message("testProgress", results);
+    return res;
+  }
+
+  /**
+   * @param events released by another thread
+   */
+  public void messages(final List<ResultEvent> events) {
+    for (final var event: events) {
+      message(event);
+    }
+  }
+
+  /**
+   * @return true if the protocol is written to capture files rather
+   *         than sent as messages - it cannot be held
+   */
+  boolean capturingProtocol() {
+    return protocolCapture != null;
+  }
+
+  /**
+   * @return true if the tests of a suite may be run alongside each
+   *         other
+   */
+  boolean overlapTests() {
+    // The captured protocol is for one test at a time
+    return "overlap".equalsIgnoreCase(globals.getScheduler()) &&
+            !capturingProtocol();
+  }
+
+  public void testProgress(final int count, final int total) {
+    message(new ResultEvent.Progress(count, total));
   }
 
   public void load(final Path file,
                    final int current,
                    final int total) {
-    final var kvs = new KeyVals("total", total);
-    if (file != null) {
-      kvs.put("name", file.toString());
+    final String name;
+    if (file == null) {
+      name = null;
+    } else {
+      name = file.toString();
     }
-    kvs.put("current", current);
-    kvs.put("total", total);
 
-    message("load", kvs);
+    message(new ResultEvent.Load(name, current, total));
   }
 
   public void protocol(final String message) {
-    message("protocol", new KeyVals("protocol", message));
+    if (protocolCapture != null) {
+      protocolCapture.add(message);
+      return;
+    }
+
+    message(new ResultEvent.ProtocolDump(message));
   }
 
   public void trace(final String message) {
-    message("trace", new KeyVals("message", message));
+    message(new ResultEvent.Trace(message));
   }
 
-  public KeyVals testFile(final String name,
-                          final String details,
-                          final Integer resultCode) {
-    final var res = new KeyVals();
-
-    results.put("name", name);
-    results.put("details", details);
-    results.put("tests", res);
+  /** Start of a test file or, with a result code, a file that was
+   * not run or failed as a whole.
+   *
+   * @param name of file
+   * @param details or null
+   * @param resultCode null for start
+   */
+  public void testFile(final String name,
+                       final String details,
+                       final Integer resultCode) {
+    if (resultCode == null) {
+      fileStats = new RequestStats();
+    }
 
-    if (resultCode != null) {
-      results.put("result", resultCode);
+    if (protocolCapture != null) {
+      if (resultCode == null) {
+        protocolCapture.file(name);
+      } else {
+        releaseProtocol(name, resultCode);
+      }
     }
 
-    message("testFile", results);
-    return res;
+    message(new ResultEvent.FileStarted(name, details, resultCode));
   }
 
-  public KeyVals testSuite(final KeyVals testfile,
-                           final String name,
-                           final String details,
-                           final Integer resultCode) {
-    final var res = new KeyVals();
-
-    testfile.put("name", name);
-    testfile.put("details", details);
-    testfile.put("tests", res);
-
-    if (resultCode != null) {
-      testfile.put("result", resultCode);
+  /** Start of a test suite or, with a result code, a suite that was
+   * not run.
+   *
+   * @param name of suite
+   * @param details or null
+   * @param resultCode null for start
+   */
+  public void testSuite(final String name,
+                        final String details,
+                        final Integer resultCode) {
+    if (resultCode == null) {
+      suiteStats = new RequestStats();
+
+      if (protocolCapture != null) {
+        protocolCapture.suite(name);
+      }
     }
 
-    message("testSuite", testfile);
-    return res;
+    message(new ResultEvent.SuiteResult(name, details, resultCode));
   }
 
-  public void testResult(final KeyVals testsuite,
-                         final String name,
+  /**
+   * @param name of test
+   * @param details or null
+   * @param resultCode result
+   * @param stats for the test requests - null if not run
+   * @param timing true if stats were requested for the test
+   */
+  public void testResult(final String name,
                          final String details,
                          final Integer resultCode,
-                         final KeyVals addons) {
-    testsuite.put("name", name);
-    testsuite.put("details", details);
-    testsuite.put("result", resultCode);
+                         final RequestStats stats,
+                         final boolean timing) {
+    if (protocolCapture != null) {
+      releaseProtocol(name, resultCode);
+    }
 
-    if (addons != null) {
-      testsuite.addAll(addons);
+    if (stats != null) {
+      synchronized (this) {
+        suiteStats.addStats(stats);
+        fileStats.addStats(stats);
+        runStats.addStats(stats);
+      }
+    }
+
+    message(new ResultEvent.TestResult(name, details, resultCode,
+                                       stats, timing));
+  }
+
+  /** End of a test suite that was run.
+   *
+   * @param name of suite
+   */
+  public void suiteFinished(final String name) {
+    message(new ResultEvent.Timings("suite", name, suiteStats));
+  }
+
+  /** End of a test file that was run.
+   *
+   * @param name of file
+   */
+  public void fileFinished(final String name) {
+    message(new ResultEvent.Timings("file", name, fileStats));
+  }
+
+  /* Pass on or spill the captured protocol for a failure - discard
+     it otherwise.
+   */
+  private void releaseProtocol(final String name,
+                               final Integer resultCode) {
+    if ((resultCode != null) &&
+            ((resultCode == RESULT_FAILED) ||
+                     (resultCode == RESULT_ERROR))) {
+      final var path = protocolCapture.spill(name);
+
+      if (path != null) {
+        message(new ResultEvent.ProtocolDump(
+                "\nProtocol written to " + path + "\n"));
+      } else {
+        for (final var dump: protocolCapture.entries()) {
+          message(new ResultEvent.ProtocolDump(dump));
+        }
+      }
     }
 
-    message("testResult", testsuite);
+    protocolCapture.clear();
   }
 
   public void delay() {
@@ -443,20 +854,27 @@ public class Manager implements Logged {
     serverInfo.ssl = ssl;
     if (ssl) {
       serverInfo.port = serverInfo.nonsslport;
-      // HOST2 serverInfo.port2 = serverInfo.nonsslport2;
     } else {
       serverInfo.port = serverInfo.sslport;
-      // HOST2 serverInfo.port2 = serverInfo.sslport2;
     }
 
-//    if (serverInfo.certdir != null) {
-//        serverInfo.certdir = os.path
-//                .join(base_dir, serverInfo.certdir)
-//    }
+    if ((replayServer != null) || (mockServer != null)) {
+      // Everything goes to the local server
+      serverInfo.ssl = false;
+      serverInfo.afunix = null;
+      serverInfo.hosts.clear();
+      if (replayServer != null) {
+        serverInfo.host = replayServer.getHost();
+        serverInfo.port = replayServer.getPort();
+      } else {
+        serverInfo.host = mockServer.getHost();
+        serverInfo.port = mockServer.getPort();
+      }
+    }
+
 
     final KeyVals moresubs = new KeyVals();
     moresubs.put("$host:", format("%s://%s", serverInfo.getScheme(), serverInfo.host));
-    //HOST2 moresubs.put("$host2:", format("https://%s", serverInfo.host2));
 
     if ((ssl && (serverInfo.port != 443)) ||
             (!ssl && (serverInfo.port != 80))) {
@@ -472,22 +890,6 @@ public class Manager implements Logged {
                    val + format(":%d", serverInfo.sslport));
     }
 
-    /*HOST2
-    if ((ssl && (serverInfo.port2 != 443)) ||
-            (!ssl && (serverInfo.port2 != 80))) {
-      var val = moresubs.getOnlyString("$host2:");
-      moresubs.put("$host2:",
-                   val + format(":%d", serverInfo.port2));
-    }
-    moresubs.put("$hostssl2:",
-                 format("https://%s", serverInfo.host2));
-    if (serverInfo.sslport2 != 443) {
-      var val = moresubs.getOnlyString("$hostssl2:");
-      moresubs.put("$hostssl2:",
-                   val + format(":%d", serverInfo.sslport2));
-    }
-    */
-
     serverInfo.addsubs(moresubs, null);
 
     var ctr = 1;
@@ -523,7 +925,7 @@ public class Manager implements Logged {
   }
 
   public TestResult runAll() {
-    message("start", null);
+    message(ResultEvent.start);
 
     var ctr = 0;
 
@@ -568,7 +970,38 @@ public class Manager implements Logged {
 
     totals.endTimer();
 
-    message("finish", null);
+    message(new ResultEvent.Timings("run", null, runStats));
+    message(ResultEvent.finish);
+
+    if (observerQueues != null) {
+      for (final var oq: observerQueues) {
+        oq.close();
+      }
+    }
+
+    metrics.close();
+
+    if (httpEngine != null) {
+      httpEngine.close();
+    }
+
+    for (final var engine: unixEngines.values()) {
+      engine.close();
+    }
+
+    if (requestGuard != null) {
+      requestGuard.close();
+    }
+
+    if (replayServer != null) {
+      replayServer.stop();
+    }
+
+    if (mockServer != null) {
+      mockServer.stop();
+    }
+
+    flushLog();
 
     if (logFile != null) {
       try {
@@ -0,0 +1,537 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester;
+
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** Live counters for long running sessions: requests by method with
+ * latency histograms, requests in flight and by pool host, timeouts
+ * and hedges, wait polls and verifier time. These are updated as the
+ * tests run and may be served over http in the Prometheus text
+ * format and/or written periodically to a file in the same format.
+ *
+ * <p>Updates are cheap and thread safe so the counters are always
+ * maintained whether or not they are published.
+ */
+public class Metrics implements Logged {
+  private static final String prefix = "caldavtester_";
+
+  /* Latencies in ms held in the same power of 2 buckets as
+     RequestStats.
+   */
+  static class Histogram {
+    private final LongAdder[] buckets =
+            new LongAdder[RequestStats.numBuckets];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void record(final long millis) {
+      buckets[bucket(millis)].increment();
+      count.increment();
+      sum.add(millis);
+    }
+
+    /* Snapshot of the bucket counts */
+    long[] counts() {
+      final var res = new long[buckets.length];
+      for (int i = 0; i < buckets.length; i++) {
+        res[i] = buckets[i].sum();
+      }
+
+      return res;
+    }
+
+    private static int bucket(final long millis) {
+      if (millis <= 0) {
+        return 0;
+      }
+
+      return Math.min(64 - Long.numberOfLeadingZeros(millis),
+                      RequestStats.numBuckets - 1);
+    }
+  }
+
+  private final long started = System.currentTimeMillis();
+
+  private final LongAdder inFlight = new LongAdder();
+  private final LongAdder requestErrors = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  private final LongAdder bytesDecoded = new LongAdder();
+  private final Map<String, LongAdder> timeouts =
+          new ConcurrentHashMap<>();
+  private final LongAdder hedged = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final Map<String, LongAdder> hosts = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> tlsHandshakes =
+          new ConcurrentHashMap<>();
+  private final Map<String, Histogram> requests =
+          new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> waitPolls =
+          new ConcurrentHashMap<>();
+  private final Map<String, Histogram> verifiers =
+          new ConcurrentHashMap<>();
+
+  /* The request rate since a publisher's previous report - each has
+     its own so serving and writing do not shorten each other's.
+   */
+  private static class RateWindow {
+    private long lastTime;
+    private long lastCount;
+
+    RateWindow(final long start) {
+      lastTime = start;
+    }
+
+    synchronized double rate(final long now,
+                             final long count) {
+      double res = 0;
+      if (now > lastTime) {
+        res = (count - lastCount) * 1000.0 / (now - lastTime);
+      }
+
+      lastTime = now;
+      lastCount = count;
+
+      return res;
+    }
+  }
+
+  private final RateWindow serverWindow = new RateWindow(started);
+  private final RateWindow fileWindow = new RateWindow(started);
+
+  private HttpServer server;
+  private ScheduledExecutorService fileWriter;
+  private Path file;
+
+  /**
+   * @return a value to pass to requestEnded
+   */
+  public long requestStarted() {
+    inFlight.increment();
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * @param method http method
+   * @param start value returned by requestStarted
+   * @param ok false if the request failed with an exception
+   */
+  public void requestEnded(final String method,
+                           final long start,
+                           final boolean ok) {
+    inFlight.decrement();
+
+    if (!ok) {
+      requestErrors.increment();
+      return;
+    }
+
+    requests.computeIfAbsent(method, k -> new Histogram())
+            .record(System.currentTimeMillis() - start);
+  }
+
+  /**
+   * @param host of the pool a request was sent to
+   */
+  public void hostRequest(final String host) {
+    hosts.computeIfAbsent(host, k -> new LongAdder()).increment();
+  }
+
+  /**
+   * @param method of a request which timed out
+   */
+  public void timedOut(final String method) {
+    timeouts.computeIfAbsent(method, k -> new LongAdder()).increment();
+  }
+
+  /**
+   * @param won true if the hedge responded first
+   */
+  public void hedged(final boolean won) {
+    hedged.increment();
+    if (won) {
+      hedgeWins.increment();
+    }
+  }
+
+  /**
+   * @param method http method
+   * @param q quantile - e.g. 0.95
+   * @param minCount fewest requests worth estimating from
+   * @return upper bound in ms of the bucket holding the quantile of
+   *         the request latency - -1 if too few requests so far
+   */
+  public long latency(final String method,
+                      final double q,
+                      final long minCount) {
+    final var hist = requests.get(method);
+    if ((hist == null) || (hist.count.sum() < minCount)) {
+      return -1;
+    }
+
+    final var counts = hist.counts();
+    long total = 0;
+    for (final var ct: counts) {
+      total += ct;
+    }
+
+    return quantile(counts, total, q);
+  }
+
+  /**
+   * @param bytes request body bytes sent
+   */
+  public void sent(final long bytes) {
+    bytesSent.add(bytes);
+  }
+
+  /**
+   * @param wire response body bytes received
+   * @param decoded the same after any decompression
+   */
+  public void received(final long wire,
+                       final long decoded) {
+    bytesReceived.add(wire);
+    bytesDecoded.add(decoded);
+  }
+
+  /**
+   * @param millis time taken
+   * @param resumed true if an earlier session was resumed
+   */
+  public void tlsHandshake(final long millis,
+                           final boolean resumed) {
+    tlsHandshakes.computeIfAbsent(String.valueOf(resumed),
+                                  k -> new Histogram())
+                 .record(millis);
+  }
+
+  /**
+   * @param kind e.g. "waitcount"
+   */
+  public void waitPoll(final String kind) {
+    waitPolls.computeIfAbsent(kind, k -> new LongAdder()).increment();
+  }
+
+  /**
+   * @param callback name of verifier
+   * @param millis time taken
+   */
+  public void verified(final String callback,
+                       final long millis) {
+    verifiers.computeIfAbsent(callback, k -> new Histogram())
+             .record(millis);
+  }
+
+  /** Start serving and/or writing the metrics.
+   *
+   * @param port for http - 0 for none
+   * @param file to write - null for none
+   * @param intervalSecs between writes of the file
+   */
+  public void publish(final int port,
+                      final Path file,
+                      final int intervalSecs) {
+    try {
+      if (port > 0) {
+        // Local only - as for the mock and replay servers
+        server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                      port), 0);
+        server.createContext("/metrics", exchange -> {
+          final var body = text(serverWindow)
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.getResponseHeaders()
+                  .set("Content-Type",
+                       "text/plain; version=0.0.4; charset=utf-8");
+          exchange.sendResponseHeaders(200, body.length);
+          try (final var out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+        server.start();
+        info("Metrics available at http://localhost:" + port +
+                     "/metrics");
+      }
+
+      if (file != null) {
+        this.file = file;
+        fileWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+          final var t = new Thread(r, "metrics-writer");
+          t.setDaemon(true);
+          return t;
+        });
+
+        final var interval = Math.max(intervalSecs, 1);
+        fileWriter.scheduleAtFixedRate(this::writeFile,
+                                       interval, interval,
+                                       TimeUnit.SECONDS);
+      }
+    } catch (final IOException ie) {
+      throwException(ie);
+    }
+  }
+
+  /** Stop publishing - the file gets a final write.
+   */
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+
+    if (fileWriter != null) {
+      fileWriter.shutdownNow();
+      fileWriter = null;
+      writeFile();
+    }
+  }
+
+  /**
+   * @param window of the publisher for the request rate
+   * @return all metrics in the Prometheus text format
+   */
+  private String text(final RateWindow window) {
+    final var sb = new StringBuilder();
+    final var now = System.currentTimeMillis();
+
+    long total = 0;
+    for (final var h: requests.values()) {
+      total += h.count.sum();
+    }
+
+    final var rate = window.rate(now, total);
+
+    gauge(sb, "uptime_seconds", "Seconds since the tester started",
+          (now - started) / 1000);
+    gauge(sb, "requests_in_flight", "Requests currently executing",
+          inFlight.sum());
+    sb.append("# HELP ").append(prefix)
+      .append("requests_per_second Request rate since the previous report\n")
+      .append("# TYPE ").append(prefix)
+      .append("requests_per_second gauge\n")
+      .append(prefix).append("requests_per_second ")
+      .append(String.format(Locale.ROOT, "%.3f", rate)).append('\n');
+
+    counterHeader(sb, "request_errors_total",
+                  "Requests which failed without a response");
+    sb.append(prefix).append("request_errors_total ")
+      .append(requestErrors.sum()).append('\n');
+
+    if (!hosts.isEmpty()) {
+      counterHeader(sb, "host_requests_total",
+                    "Requests sent to each host of the pool");
+      for (final var ent: new TreeMap<>(hosts).entrySet()) {
+        sb.append(prefix).append("host_requests_total{host=\"")
+          .append(ent.getKey()).append("\"} ")
+          .append(ent.getValue().sum()).append('\n');
+      }
+    }
+
+    counterHeader(sb, "request_timeouts_total",
+                  "Requests abandoned after the request timeout");
+    for (final var ent: new TreeMap<>(timeouts).entrySet()) {
+      sb.append(prefix).append("request_timeouts_total{method=\"")
+        .append(ent.getKey()).append("\"} ")
+        .append(ent.getValue().sum()).append('\n');
+    }
+
+    counter(sb, "hedged_requests_total",
+            "Second copies sent of slow idempotent requests",
+            hedged.sum());
+    counter(sb, "hedge_wins_total",
+            "Hedged requests where the copy responded first",
+            hedgeWins.sum());
+
+    counter(sb, "request_body_bytes_sent_total",
+            "Request body bytes sent", bytesSent.sum());
+    counter(sb, "response_body_bytes_received_total",
+            "Response body bytes received", bytesReceived.sum());
+    counter(sb, "response_body_bytes_decoded_total",
+            "Response body bytes after decompression",
+            bytesDecoded.sum());
+
+    histograms(sb, "request_duration_ms", "Request latency",
+               "method", requests);
+    quantiles(sb, "request_duration_quantile_ms",
+              "Request latency percentiles", "method", requests);
+
+    counterHeader(sb, "wait_polls_total",
+                  "Polls made while waiting for the server");
+    for (final var ent: new TreeMap<>(waitPolls).entrySet()) {
+      sb.append(prefix).append("wait_polls_total{kind=\"")
+        .append(ent.getKey()).append("\"} ")
+        .append(ent.getValue().sum()).append('\n');
+    }
+
+    histograms(sb, "verify_duration_ms", "Verifier time",
+               "verifier", verifiers);
+
+    histograms(sb, "tls_handshake_ms", "TLS handshake time",
+               "resumed", tlsHandshakes);
+
+    return sb.toString();
+  }
+
+  private void writeFile() {
+    try {
+      // Write then rename so readers never see a partial file
+      final var temp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.writeString(temp, text(fileWindow));
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (final Throwable t) {
+      warn("Unable to write metrics file " + file + ": " +
+                   t.getMessage());
+    }
+  }
+
+  private static void gauge(final StringBuilder sb,
+                            final String name,
+                            final String help,
+                            final long val) {
+    sb.append("# HELP ").append(prefix).append(name).append(' ')
+      .append(help).append('\n')
+      .append("# TYPE ").append(prefix).append(name).append(" gauge\n")
+      .append(prefix).append(name).append(' ').append(val).append('\n');
+  }
+
+  private static void counter(final StringBuilder sb,
+                              final String name,
+                              final String help,
+                              final long val) {
+    counterHeader(sb, name, help);
+    sb.append(prefix).append(name).append(' ').append(val).append('\n');
+  }
+
+  private static void counterHeader(final StringBuilder sb,
+                                    final String name,
+                                    final String help) {
+    sb.append("# HELP ").append(prefix).append(name).append(' ')
+      .append(help).append('\n')
+      .append("# TYPE ").append(prefix).append(name)
+      .append(" counter\n");
+  }
+
+  private static void histograms(final StringBuilder sb,
+                                 final String name,
+                                 final String help,
+                                 final String label,
+                                 final Map<String, Histogram> hists) {
+    sb.append("# HELP ").append(prefix).append(name).append(' ')
+      .append(help).append('\n')
+      .append("# TYPE ").append(prefix).append(name)
+      .append(" histogram\n");
+
+    for (final var ent: new TreeMap<>(hists).entrySet()) {
+      final var lbl = label + "=\"" + ent.getKey() + "\"";
+      final var h = ent.getValue();
+      final var counts = h.counts();
+      long cumulative = 0;
+
+      for (int i = 0; i < counts.length - 1; i++) {
+        cumulative += counts[i];
+        sb.append(prefix).append(name).append("_bucket{").append(lbl)
+          .append(",le=\"").append(RequestStats.bucketLimit(i))
+          .append("\"} ").append(cumulative).append('\n');
+      }
+
+      cumulative += counts[counts.length - 1];
+      sb.append(prefix).append(name).append("_bucket{").append(lbl)
+        .append(",le=\"+Inf\"} ").append(cumulative).append('\n')
+        .append(prefix).append(name).append("_sum{").append(lbl)
+        .append("} ").append(h.sum.sum()).append('\n')
+        .append(prefix).append(name).append("_count{").append(lbl)
+        .append("} ").append(cumulative).append('\n');
+    }
+  }
+
+  private static void quantiles(final StringBuilder sb,
+                                final String name,
+                                final String help,
+                                final String label,
+                                final Map<String, Histogram> hists) {
+    sb.append("# HELP ").append(prefix).append(name).append(' ')
+      .append(help).append(" - upper bound of the bucket\n")
+      .append("# TYPE ").append(prefix).append(name).append(" gauge\n");
+
+    for (final var ent: new TreeMap<>(hists).entrySet()) {
+      final var counts = ent.getValue().counts();
+      long total = 0;
+      for (final var ct: counts) {
+        total += ct;
+      }
+
+      for (final var q: new double[]{0.5, 0.9, 0.99}) {
+        sb.append(prefix).append(name).append('{').append(label)
+          .append("=\"").append(ent.getKey())
+          .append("\",quantile=\"").append(q).append("\"} ")
+          .append(quantile(counts, total, q)).append('\n');
+      }
+    }
+  }
+
+  private static long quantile(final long[] counts,
+                               final long total,
+                               final double q) {
+    if (total == 0) {
+      return 0;
+    }
+
+    final var target = (long)Math.ceil(total * q);
+    long seen = 0;
+
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        return RequestStats.bucketLimit(i);
+      }
+    }
+
+    return RequestStats.bucketLimit(counts.length - 1);
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
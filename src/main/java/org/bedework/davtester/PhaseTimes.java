@@ -0,0 +1,163 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester;
+
+import java.util.Locale;
+
+/** Time spent in each phase of running requests. Times are held in
+ * nanoseconds and phases do not overlap: time recorded while a span
+ * is open is deducted from that span - e.g. parse time during a grab
+ * is not also counted as grab time.
+ */
+public class PhaseTimes {
+  public enum Phase {
+    /* Substitutions into the uri and headers */
+    subs,
+
+    /* Loading the data and building the request entity */
+    body,
+
+    /* Connection setup and client overhead - everything in execute
+       apart from send and ttfb */
+    connect,
+
+    /* TLS handshakes for new connections */
+    tls,
+
+    /* Writing the request */
+    send,
+
+    /* From the end of send to the response headers */
+    ttfb,
+
+    /* Reading the response body */
+    read,
+
+    /* Decompressing the response body while reading it */
+    decode,
+
+    /* Parsing responses outside of verifiers */
+    parse,
+
+    /* Running the verifiers */
+    verify,
+
+    /* Extracting values from the response */
+    grab,
+
+    /* Waiting or polling for a server change */
+    wait
+  }
+
+  private static final Phase[] phases = Phase.values();
+
+  private final long[] nanos = new long[phases.length];
+
+  /* All time ever added - used to exclude nested spans */
+  private long recorded;
+
+  /** A timed section of a phase.
+   */
+  public class Span {
+    private final Phase phase;
+    private final long start;
+    private final long recordedAtStart;
+
+    Span(final Phase phase) {
+      this.phase = phase;
+      recordedAtStart = recorded;
+      start = System.nanoTime();
+    }
+
+    /** Add the elapsed time less anything recorded meanwhile.
+     */
+    public void end() {
+      final var elapsed = System.nanoTime() - start -
+              (recorded - recordedAtStart);
+      add(phase, Math.max(0, elapsed));
+    }
+  }
+
+  /**
+   * @param phase the phase
+   * @return an open span - call end on it
+   */
+  public Span start(final Phase phase) {
+    return new Span(phase);
+  }
+
+  /**
+   * @param phase the phase
+   * @param elapsed nanoseconds
+   */
+  public void add(final Phase phase,
+                  final long elapsed) {
+    nanos[phase.ordinal()] += elapsed;
+    recorded += elapsed;
+  }
+
+  /** Add the times from another set.
+   *
+   * @param that times to add
+   */
+  public void add(final PhaseTimes that) {
+    for (int i = 0; i < nanos.length; i++) {
+      nanos[i] += that.nanos[i];
+    }
+    recorded += that.recorded;
+  }
+
+  /**
+   * @param phase the phase
+   * @return nanoseconds spent in the phase
+   */
+  public long getNanos(final Phase phase) {
+    return nanos[phase.ordinal()];
+  }
+
+  /**
+   * @param phase the phase
+   * @return milliseconds spent in the phase
+   */
+  public double getMillis(final Phase phase) {
+    return (double)nanos[phase.ordinal()] / 1000000;
+  }
+
+  /**
+   * @return true if nothing recorded
+   */
+  public boolean isEmpty() {
+    for (final var n: nanos) {
+      if (n != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return e.g. "subs=0.4ms send=1.2ms ttfb=20.1ms" - phases with no
+   *         time are omitted.
+   */
+  @Override
+  public String toString() {
+    final var sb = new StringBuilder();
+
+    for (final var phase: phases) {
+      if (getNanos(phase) == 0) {
+        continue;
+      }
+
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(phase.name()).append('=')
+        .append(String.format(Locale.ROOT, "%.1fms",
+                              getMillis(phase)));
+    }
+
+    return sb.toString();
+  }
+}
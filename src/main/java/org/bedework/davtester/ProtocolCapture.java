@@ -0,0 +1,162 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester;
+
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Holds the most recent request and response dumps for the current
+ * test in a ring so that memory use is bounded however much protocol
+ * a test produces.
+ *
+ * <p>When a test fails the dumps may be written to a file named for
+ * the test under the spill directory rather than passed to the
+ * observers. Dumps for tests that pass are discarded.
+ */
+public class ProtocolCapture implements Logged {
+  private final int size;
+  private final Path spillDir;
+  private final ArrayDeque<String> ring;
+
+  /* Number discarded from the ring for the current test */
+  private int dropped;
+
+  private String file;
+  private String suite;
+
+  /**
+   * @param size max number of dumps held
+   * @param spillDir where failures are written - null for none
+   */
+  public ProtocolCapture(final int size,
+                         final Path spillDir) {
+    this.size = size;
+    this.spillDir = spillDir;
+    ring = new ArrayDeque<>(size);
+  }
+
+  /**
+   * @param name of test file now running
+   */
+  public void file(final String name) {
+    file = name;
+    suite = null;
+    clear();
+  }
+
+  /**
+   * @param name of test suite now running
+   */
+  public void suite(final String name) {
+    suite = name;
+  }
+
+  /**
+   * @param dump request or response text
+   */
+  public void add(final String dump) {
+    if (ring.size() == size) {
+      ring.removeFirst();
+      dropped++;
+    }
+
+    ring.addLast(dump);
+  }
+
+  /**
+   * @return held dumps preceded by a note of any dropped
+   */
+  public List<String> entries() {
+    final var res = new ArrayList<String>(ring.size() + 1);
+
+    if (dropped > 0) {
+      res.add(droppedNote());
+    }
+    res.addAll(ring);
+
+    return res;
+  }
+
+  /** Write the held dumps for the test to the spill directory.
+   *
+   * @param test name of the failed test
+   * @return path written or null if not spilled
+   */
+  public Path spill(final String test) {
+    if ((spillDir == null) || ring.isEmpty()) {
+      return null;
+    }
+
+    try {
+      final var dir = spillDir.resolve(safeName(file));
+      Files.createDirectories(dir);
+
+      final var base = safeName(suite) + "-" + safeName(test);
+      var path = dir.resolve(base + ".txt");
+      var ct = 1;
+      while (Files.exists(path)) {
+        path = dir.resolve(base + "-" + ct + ".txt");
+        ct++;
+      }
+
+      try (final var wtr = Files.newBufferedWriter(path)) {
+        if (dropped > 0) {
+          wtr.write(droppedNote());
+          wtr.newLine();
+        }
+
+        for (final var dump: ring) {
+          wtr.write(dump);
+          wtr.newLine();
+        }
+      }
+
+      return path;
+    } catch (final Throwable t) {
+      warn("Unable to write protocol for " + test + ": " +
+                   t.getMessage());
+      return null;
+    }
+  }
+
+  /** Discard everything held - called at the end of each test.
+   */
+  public void clear() {
+    ring.clear();
+    dropped = 0;
+  }
+
+  private String droppedNote() {
+    return "\n... " + dropped + " earlier request/response dumps dropped ...\n";
+  }
+
+  private static String safeName(final String val) {
+    if (val == null) {
+      return "_";
+    }
+
+    return val.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
@@ -19,24 +19,199 @@ import org.bedework.util.misc.ToString;
 
 /**
  * Maintains stats about the current test.
+ *
+ * <p>Elapsed times are also recorded in a histogram with power of 2
+ * millisecond buckets: bucket 0 holds times of 0ms, bucket i times
+ * from 2^(i-1) up to 2^i - 1 ms.
  */
 public class RequestStats {
+  public static final int numBuckets = 32;
+
   public int count;
   public long total;
   public long start;
 
+  /* Only valid if count > 0 */
+  public long min;
+  public long max;
+
+  private long[] buckets;
+
+  /* Request and response body bytes as sent and received, and the
+     response bodies after any decompression */
+  public long bytesSent;
+  public long bytesReceived;
+  public long bytesDecoded;
+
+  /* TLS handshakes for new connections and how many resumed an
+     earlier session */
+  public int tlsHandshakes;
+  public int tlsResumed;
+
+  /* Requests abandoned after the request timeout, second copies sent
+     of slow requests and how many of those responded first */
+  public int timeouts;
+  public int hedged;
+  public int hedgeWins;
+
+  /* Breakdown of the time spent by phase */
+  public final PhaseTimes phases = new PhaseTimes();
+
   public void startTimer() {
     start = System.currentTimeMillis();
   }
 
   public void endTimer() {
+    record(System.currentTimeMillis() - start);
+  }
+
+  /**
+   * @param elapsed millis for a request
+   */
+  public void record(final long elapsed) {
+    if ((count == 0) || (elapsed < min)) {
+      min = elapsed;
+    }
+
+    if ((count == 0) || (elapsed > max)) {
+      max = elapsed;
+    }
+
     count += 1;
-    total += System.currentTimeMillis() - start;
+    total += elapsed;
+
+    if (buckets == null) {
+      buckets = new long[numBuckets];
+    }
+
+    buckets[bucket(elapsed)]++;
+  }
+
+  /**
+   * @param i bucket index
+   * @return number of values in the bucket
+   */
+  public long getBucketCount(final int i) {
+    if (buckets == null) {
+      return 0;
+    }
+
+    return buckets[i];
+  }
+
+  /**
+   * @param i bucket index
+   * @return largest value in ms held by the bucket
+   */
+  public static long bucketLimit(final int i) {
+    if (i == 0) {
+      return 0;
+    }
+
+    if (i >= 63) {
+      return Long.MAX_VALUE;
+    }
+
+    return (1L << i) - 1;
+  }
+
+  /**
+   * @param pct percentile 0-100
+   * @return upper limit of the bucket holding the percentile, capped
+   *         at max. 0 if no values.
+   */
+  public long percentile(final double pct) {
+    if ((count == 0) || (buckets == null)) {
+      return 0;
+    }
+
+    final var target = (long)Math.ceil(count * pct / 100);
+    long seen = 0;
+
+    for (int i = 0; i < numBuckets; i++) {
+      seen += buckets[i];
+      if ((seen >= target) && (seen > 0)) {
+        return Math.min(bucketLimit(i), max);
+      }
+    }
+
+    return max;
+  }
+
+  /** Add the values from another set of stats.
+   *
+   * @param stats to add
+   */
+  public void addStats(final RequestStats stats) {
+    phases.add(stats.phases);
+    bytesSent += stats.bytesSent;
+    bytesReceived += stats.bytesReceived;
+    bytesDecoded += stats.bytesDecoded;
+    tlsHandshakes += stats.tlsHandshakes;
+    tlsResumed += stats.tlsResumed;
+    timeouts += stats.timeouts;
+    hedged += stats.hedged;
+    hedgeWins += stats.hedgeWins;
+
+    if (stats.count == 0) {
+      return;
+    }
+
+    if ((count == 0) || (stats.min < min)) {
+      min = stats.min;
+    }
+
+    if ((count == 0) || (stats.max > max)) {
+      max = stats.max;
+    }
+
+    count += stats.count;
+    total += stats.total;
+
+    if (stats.buckets != null) {
+      if (buckets == null) {
+        buckets = new long[numBuckets];
+      }
+
+      for (int i = 0; i < numBuckets; i++) {
+        buckets[i] += stats.buckets[i];
+      }
+    }
+  }
+
+  private static int bucket(final long elapsed) {
+    if (elapsed <= 0) {
+      return 0;
+    }
+
+    return Math.min(64 - Long.numberOfLeadingZeros(elapsed),
+                    numBuckets - 1);
   }
 
   public void toStringSegment(final ToString ts) {
     ts.append("count", count);
     ts.append("total", total);
     ts.append("start", start);
+    if (count > 0) {
+      ts.append("min", min);
+      ts.append("max", max);
+    }
+    if ((bytesSent > 0) || (bytesReceived > 0)) {
+      ts.append("bytesSent", bytesSent);
+      ts.append("bytesReceived", bytesReceived);
+      ts.append("bytesDecoded", bytesDecoded);
+    }
+    if (tlsHandshakes > 0) {
+      ts.append("tlsHandshakes", tlsHandshakes);
+      ts.append("tlsResumed", tlsResumed);
+    }
+    if ((timeouts > 0) || (hedged > 0)) {
+      ts.append("timeouts", timeouts);
+      ts.append("hedged", hedged);
+      ts.append("hedgeWins", hedgeWins);
+    }
+    if (!phases.isEmpty()) {
+      ts.append("phases", phases.toString());
+    }
   }
 }
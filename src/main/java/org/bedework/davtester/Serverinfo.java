@@ -21,6 +21,8 @@ package org.bedework.davtester;
 //import uuid4;
 
 import org.bedework.davtester.Utils.DtParts;
+import org.bedework.davtester.request.HostPool;
+import org.bedework.davtester.request.Timeouts;
 import org.bedework.util.misc.ToString;
 
 import org.w3c.dom.Element;
@@ -39,6 +41,7 @@ import java.util.UUID;
 
 import static java.lang.String.format;
 import static org.bedework.davtester.Utils.getDtParts;
+import static org.bedework.davtester.XmlUtils.attr;
 import static org.bedework.davtester.XmlUtils.children;
 import static org.bedework.davtester.XmlUtils.content;
 import static org.bedework.davtester.XmlUtils.contentUtf8;
@@ -59,13 +62,8 @@ public class Serverinfo {
   public int port;
   public String afunix;
 
-  /* unused?
-  public String host2 = "";
-  public int port2;
-  public String afunix2;
-  int nonsslport2 = 80;
-  int sslport2 = 443;
-   */
+  /* Requests are spread over these if there are any */
+  public final HostPool hosts = new HostPool();
 
   int nonsslport = 80;
   int sslport = 443;
@@ -81,6 +79,8 @@ public class Serverinfo {
   public long waitdelay = 250; // .25 second
   int waitsuccess = 10;
 
+  public final Timeouts timeouts = new Timeouts();
+
   final KeyVals subsKvs = new KeyVals();
   final KeyVals extrasubsKvs = new KeyVals();
 
@@ -122,8 +122,8 @@ public class Serverinfo {
     return subs(subval, null);
   }
 
-  public String subs(final String subval,
-                     final KeyVals db) {
+  public synchronized String subs(final String subval,
+                                  final KeyVals db) {
     if (subval == null) {
       return null;
     }
@@ -183,8 +183,8 @@ public class Serverinfo {
     return propertyReplace(sub, kv);
   }
 
-  void addsubs(final KeyVals items,
-               final KeyVals db) {
+  synchronized void addsubs(final KeyVals items,
+                            final KeyVals db) {
     final KeyVals dbActual;
 
     dbActual = Objects.requireNonNullElse(db, subsKvs);
@@ -206,7 +206,7 @@ public class Serverinfo {
     return subs(str, extrasubsKvs);
   }
 
-  public void addextrasubs(final KeyVals items) {
+  public synchronized void addextrasubs(final KeyVals items) {
     final KeyVals processed = new KeyVals();
 
     // Various "functions" might be applied to a variable name to cause the value to
@@ -250,7 +250,7 @@ public class Serverinfo {
   /**
    *
    */
-  public void newUIDs () {
+  public synchronized void newUIDs () {
     uidmaps.clear();
     for (int i = 1; i <= 21; i++) {
       final var key = String.format("$uid%d:", i);
@@ -277,20 +277,8 @@ public class Serverinfo {
         sslport = Integer.parseInt(content(child));
       } else if (nodeMatches(child, XmlDefs.ELEMENT_UNIX)) {
         afunix = content(child);
-        /*HOST2
-      } else if (nodeMatches(child, XmlDefs.ELEMENT_HOST2)) {
-        try {
-          host2 = textUtf8;
-        } catch (final Throwable t) {
-          host2 = "localhost";
-        }
-      } else if (nodeMatches(child, XmlDefs.ELEMENT_NONSSLPORT2)) {
-        nonsslport2 = Integer.valueOf(text);
-      } else if (nodeMatches(child, XmlDefs.ELEMENT_SSLPORT2)) {
-        sslport2 = Integer.valueOf(text);
-      } else if (nodeMatches(child, XmlDefs.ELEMENT_UNIX2)) {
-        afunix2 = text;
-         */
+      } else if (nodeMatches(child, XmlDefs.ELEMENT_HOSTS)) {
+        parseHosts(child);
       } else if (nodeMatches(child, XmlDefs.ELEMENT_AUTHTYPE)) {
         authtype = contentUtf8(child);
       } else if (nodeMatches(child, XmlDefs.ELEMENT_CERTDIR)) {
@@ -301,6 +289,8 @@ public class Serverinfo {
         waitdelay = (long)(floatVal(child) * 1000);
       } else if (nodeMatches(child, XmlDefs.ELEMENT_WAITSUCCESS)) {
         waitsuccess = Integer.parseInt(content(child));
+      } else if (nodeMatches(child, XmlDefs.ELEMENT_TIMEOUTS)) {
+        parseTimeouts(child);
       } else if (nodeMatches(child, XmlDefs.ELEMENT_FEATURES)) {
         parseFeatures(child);
       } else if (nodeMatches(child, XmlDefs.ELEMENT_SUBSTITUTIONS)) {
@@ -317,6 +307,36 @@ public class Serverinfo {
     updateParams();
   }
 
+  private void parseHosts(final Element node) {
+    hosts.setBalance(attr(node, XmlDefs.ATTR_BALANCE));
+
+    for (final var child: children(node)) {
+      if (nodeMatches(child, XmlDefs.ELEMENT_HOST)) {
+        hosts.add(contentUtf8(child));
+      }
+    }
+  }
+
+  /* Values are in seconds, as for waitdelay */
+  private void parseTimeouts(final Node node) {
+    for (final var child: children(node)) {
+      final var millis = (int)(floatVal(child) * 1000);
+
+      if (nodeMatches(child, XmlDefs.ELEMENT_CONNECT)) {
+        timeouts.connect = millis;
+      } else if (nodeMatches(child, XmlDefs.ELEMENT_SOCKET)) {
+        timeouts.socket = millis;
+      } else if (nodeMatches(child, XmlDefs.ELEMENT_REQUEST)) {
+        final var method = attr(child, XmlDefs.ATTR_METHOD);
+        if (method == null) {
+          timeouts.request = millis;
+        } else {
+          timeouts.setRequest(method, millis);
+        }
+      }
+    }
+  }
+
   public void parseFeatures (final Node node) {
     for (final var child: children(node)) {
       if (nodeMatches(child, XmlDefs.ELEMENT_FEATURE)) {
@@ -518,6 +538,9 @@ public class Serverinfo {
      ts.append("host", host);
      ts.append("port", port);
      ts.append("afunix", afunix);
+    if (!hosts.isEmpty()) {
+      ts.append("hosts", hosts.toString());
+    }
 
     ts.append("nonsslport", nonsslport);
     ts.append("sslport", sslport);
@@ -532,6 +555,9 @@ public class Serverinfo {
     ts.append("waitcount", waitcount);
     ts.append("waitdelay", waitdelay);
     ts.append("waitsuccess", waitsuccess);
+    if (!timeouts.isEmpty()) {
+      ts.append("timeouts", timeouts.toString());
+    }
     ts.append("subsKvs", subsKvs);
     ts.append("extrasubsKvs", extrasubsKvs);
     ts.append("calendardatafilters", calendardatafilters);
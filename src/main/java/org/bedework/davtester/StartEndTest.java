@@ -3,25 +3,47 @@
 */
 package org.bedework.davtester;
 
+import org.bedework.davtester.observers.ResultEvent;
+import org.bedework.davtester.request.Footprint;
 import org.bedework.davtester.request.Request;
+import org.bedework.davtester.request.Request.DoRequestResult;
 import org.bedework.util.misc.Util;
 
 import org.w3c.dom.Element;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.http.HttpServletResponse;
 
 import static java.lang.String.format;
+import static org.bedework.davtester.Utils.throwException;
 
 /**
  * User: mike Date: 3/4/20 Time: 22:33
+ *
+ * <p>With startBatchSize set, runs of independent start requests are
+ * sent together - e.g. the fixtures PUT into a collection once the
+ * collection has been created. A request waits for the requests
+ * before it if it is not independent (see Request.independent), uses
+ * different credentials or its uri is the same as, or within, one
+ * already in the batch. Results are checked in order as before, but
+ * the rest of a batch has been sent when a request in it fails.
  */
 public class StartEndTest extends DavTesterBase {
   private List<Request> requests = new ArrayList<>();
   private final boolean start;
 
+  /* The result of a batched request and what it would have output */
+  private static class Outcome {
+    DoRequestResult result;
+    Throwable failure;
+    List<ResultEvent> messages;
+  }
+
   public StartEndTest(final Manager manager,
                       final boolean start) {
     super(manager);
@@ -68,31 +90,55 @@ public class StartEndTest extends DavTesterBase {
     var reqCount = 1;
     StringBuilder resulttxt = new StringBuilder();
 
-    for (final var req: requests) {
-      final var resreq = req.run(false,
-                                 false, // doverify,
-                                 start, // forceverify,
-                                 null, // stats
-                                 null, // etags
-                                 format("%s | #%s", label, reqCount),
-                                 1);  // count
-      if (resreq.message != null) {
-        resulttxt.append(resreq.message);
-      }
+    final int batchSize;
+    if (start && !manager.capturingProtocol()) {
+      batchSize = manager.globals.getStartBatchSize();
+    } else {
+      batchSize = 0;
+    }
 
-      if (!resreq.ok &&
-              (!req.method.equals("DELETE") ||
-                       (resreq.status != HttpServletResponse.SC_NOT_FOUND))) {
-        resulttxt.append(format(
-                "\nFailure during multiple requests " +
-                        "#%d out of %d, request=%s",
-                reqCount, requests.size(),
-                req));
-        result = false;
-        break;
-      }
+    ExecutorService executor = null;
+    if (batchSize > 1) {
+      executor = Executors.newFixedThreadPool(batchSize, r -> {
+        final var t = new Thread(r, "start-requests");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+
+    try {
+      requests:
+      while (reqCount <= requests.size()) {
+        final var batch = nextBatch(reqCount - 1, batchSize);
+        final var results = runBatch(batch, executor, label, reqCount);
+
+        for (int i = 0; i < batch.size(); i++) {
+          final var req = batch.get(i);
+          final var resreq = results.get(i);
+
+          if (resreq.message != null) {
+            resulttxt.append(resreq.message);
+          }
+
+          if (!resreq.ok &&
+                  (!req.method.equals("DELETE") ||
+                           (resreq.status != HttpServletResponse.SC_NOT_FOUND))) {
+            resulttxt.append(format(
+                    "\nFailure during multiple requests " +
+                            "#%d out of %d, request=%s",
+                    reqCount, requests.size(),
+                    req));
+            result = false;
+            break requests;
+          }
 
-      reqCount++;
+          reqCount++;
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
     }
 
     final String s;
@@ -113,4 +159,112 @@ public class StartEndTest extends DavTesterBase {
 
     return result;
   }
+
+  /* The requests from index on which can be sent together. */
+  private List<Request> nextBatch(final int index,
+                                  final int batchSize) {
+    final var first = requests.get(index);
+    final var batch = new ArrayList<Request>();
+    batch.add(first);
+
+    if ((batchSize <= 1) || !first.independent()) {
+      return batch;
+    }
+
+    final var authKey = first.authKey();
+    final var paths = new ArrayList<String>();
+    paths.add(Footprint.path(first.getURI()));
+
+    for (int i = index + 1;
+         (i < requests.size()) && (batch.size() < batchSize);
+         i++) {
+      final var req = requests.get(i);
+      if (!req.independent() || !authKey.equals(req.authKey())) {
+        break;
+      }
+
+      final var path = Footprint.path(req.getURI());
+      for (final var p: paths) {
+        if (Footprint.within(path, p) ||
+                Footprint.within(p, path)) {
+          return batch;
+        }
+      }
+
+      batch.add(req);
+      paths.add(path);
+    }
+
+    return batch;
+  }
+
+  /* Results in request order. A single request is run on this
+     thread - otherwise all are run and their messages are then sent
+     in request order, up to the first which threw.
+   */
+  private List<DoRequestResult> runBatch(final List<Request> batch,
+                                         final ExecutorService executor,
+                                         final String label,
+                                         final int reqCount) {
+    if (batch.size() == 1) {
+      return List.of(run(batch.get(0), label, reqCount));
+    }
+
+    final var futures = new ArrayList<CompletableFuture<Outcome>>();
+    var ct = reqCount;
+    for (final var req: batch) {
+      final var num = ct;
+      futures.add(CompletableFuture.supplyAsync(
+              () -> runHeld(req, label, num), executor));
+      ct++;
+    }
+
+    final var results = new ArrayList<DoRequestResult>();
+
+    for (final var f: futures) {
+      final var outcome = f.join();
+
+      manager.messages(outcome.messages);
+
+      if (outcome.failure != null) {
+        throwException(outcome.failure);
+      }
+
+      results.add(outcome.result);
+    }
+
+    return results;
+  }
+
+  /* Run with the messages - e.g. printed requests - held so they are
+     not mixed with those of the rest of the batch.
+   */
+  private Outcome runHeld(final Request req,
+                          final String label,
+                          final int reqCount) {
+    final var res = new Outcome();
+
+    manager.holdMessages();
+    try {
+      res.result = run(req, label, reqCount);
+    } catch (final Throwable t) {
+      res.failure = t;
+    } finally {
+      res.messages = manager.releaseMessages();
+    }
+
+    return res;
+  }
+
+  private DoRequestResult run(final Request req,
+                              final String label,
+                              final int reqCount) {
+    return req.run(false,
+                   false, // doverify,
+                   start, // forceverify,
+                   null, // stats
+                   null, // etags
+                   format("%s | #%s", label, reqCount),
+                   1);  // count
+  }
 }
@@ -15,6 +15,7 @@
 */
 package org.bedework.davtester;
 
+import org.bedework.davtester.request.Footprint;
 import org.bedework.davtester.request.Request;
 import org.bedework.util.misc.ToString;
 
@@ -80,31 +81,43 @@ class Test extends DavTesterBase {
     return super.xmlNode(node);
   }
 
-  public TestResult run(final KeyVals testsuite,
-                        final Map<String, String> etags,
+  /**
+   * @return what the requests of this test touch
+   */
+  Footprint footprint() {
+    final var res = new Footprint();
+    res.barrier = httpTrace;
+
+    for (final var req: requests) {
+      res.add(req.footprint());
+    }
+
+    return res;
+  }
+
+  public TestResult run(final Map<String, String> etags,
                         final boolean only,
                         final String label) {
     if (ignore || (manager.currentTestfile.only && !only)) {
-      manager.testResult(testsuite, name,
+      manager.testResult(name,
                          "      Deliberately ignored",
-                         RESULT_IGNORED, null);
+                         RESULT_IGNORED, null, false);
       return TestResult.ignored();
     }
 
     if (hasMissingFeatures()) {
-      manager.testResult(testsuite, name,
+      manager.testResult(name,
                          format("      Missing features: %s",
                                 missingFeatures()),
-                         RESULT_IGNORED, null);
+                         RESULT_IGNORED, null, false);
       return TestResult.ignored();
     }
 
     if (hasExcludedFeatures()) {
-      manager.testResult(testsuite,
-                         name,
+      manager.testResult(name,
                          format("      Excluded features: %s",
                                 excludedFeatures()),
-                         RESULT_IGNORED, null);
+                         RESULT_IGNORED, null, false);
       return TestResult.ignored();
     }
 
@@ -128,9 +141,9 @@ class Test extends DavTesterBase {
           failed = false;
           if (req.iterateData) {
             if (!req.hasNextData()) {
-              manager.testResult(testsuite, name,
+              manager.testResult(name,
                                  "      No iteration data - ignored",
-                                 RESULT_IGNORED, null);
+                                 RESULT_IGNORED, reqstats, false);
               return TestResult.ignored();
             }
 
@@ -171,7 +184,6 @@ class Test extends DavTesterBase {
       }
     }
 
-    var addons = new KeyVals();
     if (resulttxt != null) {
       manager.trace(resulttxt);
     }
@@ -181,10 +193,9 @@ class Test extends DavTesterBase {
                            ((float)reqstats.total / 1000)));
       manager.trace(format("    Average Time: %.3f secs",
                            ((float)reqstats.total / reqstats.count)));
-      var timing = new KeyVals();
-      timing.put("total", reqstats.total);
-      timing.put("average", reqstats.total / reqstats.count);
-      addons.put("timing", timing);
+      if (!reqstats.phases.isEmpty()) {
+        manager.trace("    Phases: " + reqstats.phases);
+      }
     }
 
     // postgresResult(postgresCount, indent=8);
@@ -194,8 +205,8 @@ class Test extends DavTesterBase {
     } else {
       rcode = RESULT_FAILED;
     }
-    manager.testResult(testsuite, name, resulttxt, rcode,
-                       addons);
+    manager.testResult(name, resulttxt, rcode,
+                       reqstats, stats);
 
     if (result) {
       return TestResult.ok();
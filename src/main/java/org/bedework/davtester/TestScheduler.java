@@ -0,0 +1,155 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester;
+
+import org.bedework.davtester.observers.ResultEvent;
+import org.bedework.davtester.request.Footprint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** Runs the tests of a suite in dependency order rather than strictly
+ * one after another. A test waits only for the earlier tests whose
+ * footprints conflict with its own - e.g. one which PUTs a resource
+ * the test reads or grabs a variable it uses - and for any earlier
+ * test which skips the rest of the suite if it fails.
+ *
+ * <p>The messages from each test are held until those of the tests
+ * before it have been sent, so results are reported in the same
+ * order as for a strict run.
+ */
+class TestScheduler {
+  private final int threads;
+
+  /* Index of the first test to throw - later ones are not started */
+  private final AtomicInteger thrown = new AtomicInteger(Integer.MAX_VALUE);
+
+  /* The result of a test and what it would have output */
+  private static class Outcome {
+    TestResult result;
+    Throwable failure;
+    List<ResultEvent> messages;
+  }
+
+  /**
+   * @param threads max number of tests run at once
+   */
+  TestScheduler(final int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @param tests of a suite
+   * @return for each test the indexes of the earlier tests it must
+   *         wait for
+   */
+  static List<List<Integer>> dependencies(final List<Test> tests) {
+    final var footprints = new ArrayList<Footprint>(tests.size());
+    for (final var test: tests) {
+      footprints.add(test.footprint());
+    }
+
+    final var res = new ArrayList<List<Integer>>(tests.size());
+
+    for (int i = 0; i < tests.size(); i++) {
+      final var deps = new ArrayList<Integer>();
+      final var fp = footprints.get(i);
+
+      for (int j = 0; j < i; j++) {
+        if (tests.get(j).skipSuiteOnFail ||
+                fp.conflicts(footprints.get(j))) {
+          deps.add(j);
+        }
+      }
+
+      res.add(deps);
+    }
+
+    return res;
+  }
+
+  /**
+   * @param manager for messages
+   * @param tests to run
+   * @param runner runs one test
+   * @return combined results
+   */
+  TestResult run(final Manager manager,
+                 final List<Test> tests,
+                 final Function<Test, TestResult> runner) {
+    final var deps = dependencies(tests);
+    final ExecutorService executor =
+            Executors.newFixedThreadPool(threads, r -> {
+              final var t = new Thread(r, "test-scheduler");
+              t.setDaemon(true);
+              return t;
+            });
+
+    final var outcomes = new ArrayList<CompletableFuture<Outcome>>();
+
+    try {
+      for (int i = 0; i < tests.size(); i++) {
+        final var index = i;
+        final var waitFor = new CompletableFuture<?>[deps.get(i).size()];
+
+        for (int j = 0; j < waitFor.length; j++) {
+          waitFor[j] = outcomes.get(deps.get(i).get(j));
+        }
+
+        outcomes.add(CompletableFuture.allOf(waitFor).thenApplyAsync(
+                v -> run(manager, tests, index, runner), executor));
+      }
+
+      final var res = new TestResult();
+
+      for (final var f: outcomes) {
+        final var outcome = f.join();
+
+        manager.messages(outcome.messages);
+
+        if (outcome.failure != null) {
+          throwException(outcome.failure);
+        }
+
+        res.add(outcome.result);
+      }
+
+      return res;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private Outcome run(final Manager manager,
+                      final List<Test> tests,
+                      final int index,
+                      final Function<Test, TestResult> runner) {
+    final var res = new Outcome();
+
+    if (thrown.get() < index) {
+      // Never reported - the earlier exception is thrown first
+      res.messages = List.of();
+      return res;
+    }
+
+    manager.holdMessages();
+    try {
+      res.result = runner.apply(tests.get(index));
+    } catch (final Throwable t) {
+      res.failure = t;
+      thrown.accumulateAndGet(index, Math::min);
+    } finally {
+      res.messages = manager.releaseMessages();
+    }
+
+    return res;
+  }
+}
@@ -169,13 +169,14 @@ public class Testfile extends DavTesterBase {
   public TestResult runSuites(final String label) {
     var res = new TestResult();
 
-    var testfile = manager.testFile(testPath.toString(),
-                                    description, null);
+    manager.testFile(testPath.toString(), description, null);
     for (var suite: suites) {
       currentSuite = suite;
-      res.add(suite.run(testfile, label));
+      res.add(suite.run(label));
     }
 
+    manager.fileFinished(testPath.toString());
+
     return res;
   }
 
@@ -20,8 +20,10 @@ import org.bedework.util.misc.ToString;
 import org.w3c.dom.Element;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.lang.String.format;
 import static org.bedework.davtester.Manager.RESULT_IGNORED;
@@ -34,7 +36,7 @@ import static org.bedework.util.xml.XmlUtil.nodeMatches;
  */
 class Testsuite extends DavTesterBase {
   private boolean changeuid;
-  private boolean errorSkip;
+  private volatile boolean errorSkip;
 
   public List<Test> tests = new ArrayList<>();
 
@@ -69,15 +71,13 @@ class Testsuite extends DavTesterBase {
     return super.xmlNode(node);
   }
 
-  public TestResult run(final KeyVals testfile,
-                        final String label) {
+  public TestResult run(final String label) {
     try {
       if (httpTrace) {
         httpTraceOn();
       }
 
-      return runTestSuite(testfile,
-                          format("%s | %s", label, name));
+      return runTestSuite(format("%s | %s", label, name));
     } finally {
       if (httpTrace) {
         httpTraceOff();
@@ -85,24 +85,23 @@ class Testsuite extends DavTesterBase {
     }
   }
 
-  public TestResult runTestSuite(final KeyVals testfile,
-                                 final String label) {
+  public TestResult runTestSuite(final String label) {
     var resultName = name;
     var res = new TestResult();
     // POSTGRES postgresCount = null;
 
     if ((manager.currentTestfile.only && !only) || ignore) {
-      manager.testSuite(testfile, resultName,
+      manager.testSuite(resultName,
                         "    Deliberately ignored",
                         RESULT_IGNORED);
       res.ignored = tests.size();
     } else if (hasMissingFeatures()) {
-      manager.testSuite(testfile, resultName,
+      manager.testSuite(resultName,
                         format("    Missing features: %s", missingFeatures()),
                         RESULT_IGNORED);
       res.ignored = tests.size();
     } else if (hasExcludedFeatures()) {
-      manager.testSuite(testfile, resultName,
+      manager.testSuite(resultName,
                         format("    Excluded features: %s", excludedFeatures()),
                         RESULT_IGNORED);
       res.ignored = tests.size();
@@ -120,36 +119,27 @@ class Testsuite extends DavTesterBase {
         }
       }
 
-      var testsuite = manager.testSuite(testfile, resultName, "", null);
+      manager.testSuite(resultName, "", null);
       if (changeuid) {
         manager.serverInfo.newUIDs();
       }
 
-      for (var test: tests) {
-        if (errorSkip) {
-          res.tests++;
-          res.errorSkipped++;
-          continue;
-        }
-
-        try {
-          if (test.httpTrace) {
-            httpTraceOn();
-          }
-
-          var testRes =
-                  test.run(testsuite, etags, onlyTests,
-                           format("%s | %s", label, test.name));
-          if ((testRes.failed > 0) && test.skipSuiteOnFail) {
-            errorSkip = true;
-          }
-          res.add(testRes);
-        } finally {
-          if (test.httpTrace) {
-            httpTraceOff();
-          }
+      if (manager.overlapTests()) {
+        // Tests may add etags from other threads
+        final var syncEtags = Collections.synchronizedMap(etags);
+        final var runOnly = onlyTests;
+
+        res.add(new TestScheduler(manager.globals.getSchedulerThreads())
+                        .run(manager, tests,
+                             test -> runTest(test, syncEtags,
+                                             runOnly, label)));
+      } else {
+        for (var test: tests) {
+          res.add(runTest(test, etags, onlyTests, label));
         }
       }
+
+      manager.suiteFinished(resultName);
       /*
             if (manager.memUsage){
               end_usage=manager.getMemusage();
@@ -172,6 +162,36 @@ class Testsuite extends DavTesterBase {
     return res;
   }
 
+  private TestResult runTest(final Test test,
+                             final Map<String, String> etags,
+                             final boolean onlyTests,
+                             final String label) {
+    if (errorSkip) {
+      final var res = new TestResult();
+      res.tests++;
+      res.errorSkipped++;
+      return res;
+    }
+
+    try {
+      if (test.httpTrace) {
+        httpTraceOn();
+      }
+
+      var testRes =
+              test.run(etags, onlyTests,
+                       format("%s | %s", label, test.name));
+      if ((testRes.failed > 0) && test.skipSuiteOnFail) {
+        errorSkip = true;
+      }
+      return testRes;
+    } finally {
+      if (test.httpTrace) {
+        httpTraceOff();
+      }
+    }
+  }
+
   public String toString() {
     var ts = new ToString(this);
 
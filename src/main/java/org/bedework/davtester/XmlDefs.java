@@ -31,6 +31,7 @@ public interface XmlDefs {
   QName ELEMENT_CALLBACK = new QName("callback");
   QName ELEMENT_CERTDIR = new QName("certdir");
   QName ELEMENT_CLIENTS = new QName("clients");
+  QName ELEMENT_CONNECT = new QName("connect");
   QName ELEMENT_CONTENTTYPE = new QName("content-type");
   QName ELEMENT_DATA = new QName("data");
   QName ELEMENT_DEFAULTFILTERS = new QName("default-filters");
@@ -53,7 +54,7 @@ public interface XmlDefs {
   QName ELEMENT_GRABURI = new QName("graburi");
   QName ELEMENT_HEADER = new QName("header");
   QName ELEMENT_HOST = new QName("host");
-  //QName ELEMENT_HOST2 = new QName("host2");
+  QName ELEMENT_HOSTS = new QName("hosts");
   QName ELEMENT_KEY = new QName("key");
   QName ELEMENT_LOGGING = new QName("logging");
   QName ELEMENT_MAILFROM = new QName("mailfrom");
@@ -75,6 +76,7 @@ public interface XmlDefs {
   QName ELEMENT_RUNS = new QName("runs");
   QName ELEMENT_RURI = new QName("ruri");
   QName ELEMENT_SERVERINFO = new QName("serverinfo");
+  QName ELEMENT_SOCKET = new QName("socket");
   QName ELEMENT_SPREAD = new QName("spread");
   QName ELEMENT_SSLPORT = new QName("sslport");
   QName ELEMENT_SSLPORT2 = new QName("sslport2");
@@ -88,6 +90,7 @@ public interface XmlDefs {
   QName ELEMENT_TESTS = new QName("tests");
   QName ELEMENT_TESTSUITE = new QName("test-suite");
   QName ELEMENT_TIMEOUT = new QName("timeout");
+  QName ELEMENT_TIMEOUTS = new QName("timeouts");
   QName ELEMENT_THREADS = new QName("threads");
   QName ELEMENT_UNIX = new QName("unix");
   QName ELEMENT_UNIX2 = new QName("unix2");
@@ -99,8 +102,8 @@ public interface XmlDefs {
   QName ELEMENT_WAITSUCCESS = new QName("waitsuccess");
   QName ELEMENT_WARNINGTIME = new QName("warningtime");
 
-  //String ATTR_HOST2 = "host2";
   String ATTR_AUTH = "auth";
+  String ATTR_BALANCE = "balance";
   String ATTR_CERT = "cert";
   String ATTR_CHANGE_UID = "change-uid";
   String ATTR_COUNT = "count";
@@ -112,6 +115,7 @@ public interface XmlDefs {
   String ATTR_IGNORE = "ignore";
   String ATTR_INTERVAL = "interval";
   String ATTR_ITERATE_DATA = "iterate-data";
+  String ATTR_METHOD = "method";
   String ATTR_NAME = "name";
   String ATTR_ONLY = "only";
   String ATTR_PRINT_REQUEST = "print-request";
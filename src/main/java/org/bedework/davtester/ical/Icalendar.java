@@ -11,6 +11,7 @@ import net.fortuna.ical4j.data.CalendarParserImpl;
 import net.fortuna.ical4j.data.UnfoldingReader;
 import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentContainer;
 import net.fortuna.ical4j.model.ComponentList;
 import net.fortuna.ical4j.model.Date;
 import net.fortuna.ical4j.model.Property;
@@ -28,6 +29,7 @@ import net.fortuna.ical4j.validate.ValidationException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -120,6 +122,23 @@ public class Icalendar extends Component {
     return ical;
   }
 
+  /**
+   * @return a deep copy - safe to modify
+   */
+  public Icalendar deepCopy() {
+    final var ical = new Icalendar();
+
+    if (cal != null) {
+      try {
+        ical.cal = new Calendar(cal);
+      } catch (final Throwable t) {
+        throwException(t);
+      }
+    }
+
+    return ical;
+  }
+
   public void removeTimeZones() {
     if (cal == null) {
       return;
@@ -278,6 +297,114 @@ public class Icalendar extends Component {
     return Arrays.asList(cal.toString().split(Strings.LINE_SEPARATOR));
   }
 
+  /** Compare in canonical form without serialising the calendars.
+   * Components are compared in order (callers should sort first),
+   * properties within each component are compared as a multiset so
+   * their order is not significant.
+   *
+   * @param that calendar to compare with
+   * @return true if the calendars match
+   */
+  public boolean matches(final Icalendar that) {
+    if ((cal == null) || (that.cal == null)) {
+      return cal == that.cal;
+    }
+
+    return propertiesMatch(cal.getProperties(),
+                           that.cal.getProperties()) &&
+            componentsMatch(cal.getComponents(),
+                            that.cal.getComponents());
+  }
+
+  private static boolean componentsMatch(
+          final List<? extends Component> comps1,
+          final List<? extends Component> comps2) {
+    if (comps1.size() != comps2.size()) {
+      return false;
+    }
+
+    for (int i = 0; i < comps1.size(); i++) {
+      final var c1 = comps1.get(i);
+      final var c2 = comps2.get(i);
+
+      if (!c1.getName().equals(c2.getName()) ||
+              !propertiesMatch(c1.getProperties(),
+                               c2.getProperties()) ||
+              !componentsMatch(subComponents(c1),
+                               subComponents(c2))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static List<? extends Component> subComponents(
+          final Component c) {
+    if (c instanceof ComponentContainer) {
+      return ((ComponentContainer<?>)c).getComponents();
+    }
+
+    return Collections.emptyList();
+  }
+
+  private static boolean propertiesMatch(final List<Property> props1,
+                                         final List<Property> props2) {
+    final int sz = props1.size();
+
+    if (sz != props2.size()) {
+      return false;
+    }
+
+    final var vals1 = new String[sz];
+    final var vals2 = new String[sz];
+
+    // Usually in the same order - skip the matching prefix
+    int start = 0;
+    while (start < sz) {
+      vals1[start] = props1.get(start).toString();
+      vals2[start] = props2.get(start).toString();
+
+      if (!vals1[start].equals(vals2[start])) {
+        break;
+      }
+      start++;
+    }
+
+    if (start == sz) {
+      return true;
+    }
+
+    // Remainder compared as a multiset
+    final var counts = new HashMap<String, Integer>();
+
+    for (int i = start; i < sz; i++) {
+      if (vals1[i] == null) {
+        vals1[i] = props1.get(i).toString();
+      }
+      counts.merge(vals1[i], 1, Integer::sum);
+    }
+
+    for (int i = start; i < sz; i++) {
+      if (vals2[i] == null) {
+        vals2[i] = props2.get(i).toString();
+      }
+
+      final Integer ct = counts.get(vals2[i]);
+      if (ct == null) {
+        return false;
+      }
+
+      if (ct == 1) {
+        counts.remove(vals2[i]);
+      } else {
+        counts.put(vals2[i], ct - 1);
+      }
+    }
+
+    return counts.isEmpty();
+  }
+
   @Override
   public void validate(final boolean recurse)
           throws ValidationException {
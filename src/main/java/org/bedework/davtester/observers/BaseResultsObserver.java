@@ -23,17 +23,20 @@ import org.bedework.util.logging.Logged;
 /**
  A base class for an observer that gets passed results of tests.
 
- Supported messages:
+ Supported messages and the ResultEvent class for each:
 
- trace - tracing tool activity
- begin - beginning
- load - loading a test
- start - starting tests
- testFile - add a test file
- testSuite - add a test suite
- testResult - add a test result
- protocol - protocol log
- finish - tests completed
+ trace - tracing tool activity (Trace)
+ load - loading a test (Load)
+ start - starting tests (Start)
+ testProgress - starting a test file (Progress)
+ testFile - add a test file (FileStarted)
+ testSuite - add a test suite (SuiteResult)
+ testResult - add a test result (TestResult)
+ timings - request times by phase for a suite, file or run (Timings)
+ exchange - an http request and response (Exchange) - only sent if
+            some observer wantsExchanges
+ protocol - protocol log (ProtocolDump)
+ finish - tests completed (Finish)
  */
 public abstract class BaseResultsObserver implements Logged {
   protected Manager manager;
@@ -41,7 +44,31 @@ public abstract class BaseResultsObserver implements Logged {
   BaseResultsObserver() {
   }
 
-  public abstract void process(final String message, final KeyVals args);
+  /** Called for each event. The default converts the event to the
+   * older message and KeyVals form. Observers should override this
+   * rather than the KeyVals form.
+   *
+   * @param event the event
+   */
+  public void process(final ResultEvent event) {
+    process(event.getMessage(), event.toKeyVals());
+  }
+
+  /** Compatibility for observers written before ResultEvent.
+   *
+   * @param message name
+   * @param args for the message - may be null
+   */
+  public void process(final String message, final KeyVals args) {
+  }
+
+  /**
+   * @return true if this observer needs exchange messages. Building
+   *         those has a cost so they are only sent if needed.
+   */
+  public boolean wantsExchanges() {
+    return false;
+  }
 
   /**
    * Called immediately after creation.
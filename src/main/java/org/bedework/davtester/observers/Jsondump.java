@@ -15,67 +15,307 @@
 */
 package org.bedework.davtester.observers;
 
-import org.bedework.davtester.KeyVals;
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.RequestStats;
+import org.bedework.davtester.observers.ResultEvent.FileStarted;
+import org.bedework.davtester.observers.ResultEvent.Outcome;
+import org.bedework.davtester.observers.ResultEvent.ProtocolDump;
+import org.bedework.davtester.observers.ResultEvent.SuiteResult;
+import org.bedework.davtester.observers.ResultEvent.TestResult;
+import org.bedework.davtester.observers.ResultEvent.Timings;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.bedework.davtester.Utils.throwException;
 
 /**
- * A results observer that prints results to standard output.
+ * A results observer that writes results as newline delimited JSON -
+ * one object per line, written as each file, suite and test is
+ * reported. Output goes to the file named by the jsonOutput option
+ * or to the log if that is not set.
+ *
+ * <p>Each object has an "event" and a "time". Test results include
+ * the request stats and any protocol dumps for that test only.
  */
 public class Jsondump extends BaseResultsObserver {
-  private List<Object> currentProtocol = new ArrayList<>();
-  private ObjectMapper om = new ObjectMapper();
+  final static Map<Integer, String> RESULT_STRINGS = new HashMap<>();
+  static {
+    RESULT_STRINGS.put(Manager.RESULT_OK, "ok");
+    RESULT_STRINGS.put(Manager.RESULT_FAILED, "failed");
+    RESULT_STRINGS.put(Manager.RESULT_ERROR, "error");
+    RESULT_STRINGS.put(Manager.RESULT_IGNORED, "ignored");
+  }
+
+  private final JsonFactory factory = new JsonFactory();
+
+  /* Null if we write to the log */
+  private Writer out;
+
+  private List<String> currentProtocol = new ArrayList<>();
+  private String currentFile;
+  private String currentSuite;
 
   public Jsondump() {
   }
 
-  public void process(final String message, final KeyVals args) {
-    switch (message) {
-      case "finish":
-        finish();
-        break;
-      case "protocol":
-        protocol(args);
-        break;
-      case "testSuite":
-        testSuite(args);
-        break;
-      case "testResult":
-        testResult(args);
+  @Override
+  public void init(final Manager manager) {
+    super.init(manager);
+
+    final var outName = manager.globals.getJsonOutput();
+    if (outName == null) {
+      return;
+    }
+
+    try {
+      out = new BufferedWriter(new FileWriter(manager.subs(outName)));
+    } catch (final Throwable t) {
+      throwException(t);
     }
   }
 
-  public void protocol(final KeyVals args) {
-    var s = args.getOnlyString("protocol");
-    if (s != null) {
-      currentProtocol.add(s);
+  @Override
+  public void process(final ResultEvent event) {
+    try {
+      switch (event.getMessage()) {
+        case "start":
+          start();
+          break;
+        case "finish":
+          finish();
+          break;
+        case "protocol":
+          protocol((ProtocolDump)event);
+          break;
+        case "testFile":
+          testFile((FileStarted)event);
+          break;
+        case "testSuite":
+          testSuite((SuiteResult)event);
+          break;
+        case "testResult":
+          testResult((TestResult)event);
+          break;
+        case "timings":
+          timings((Timings)event);
+      }
+    } catch (final IOException ie) {
+      throwException(ie);
     }
   }
 
-  public void testResult(final KeyVals args) {
-    args.put("time", System.currentTimeMillis());
-    if (currentProtocol != null) {
-      args.put("protocol", currentProtocol);
-      currentProtocol = null;
+  public void start() throws IOException {
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "start");
+
+    endRecord(sw, gen);
+  }
+
+  public void protocol(final ProtocolDump ev) {
+    if (ev.protocol != null) {
+      currentProtocol.add(ev.protocol);
     }
   }
 
-  public void testSuite(final KeyVals args) {
-    args.put("time", System.currentTimeMillis());
+  public void testFile(final FileStarted ev) throws IOException {
+    currentFile = ev.name;
+    currentSuite = null;
+
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "testFile");
+
+    outcome(gen, ev);
+
+    endRecord(sw, gen);
   }
 
-  public void finish() {
-    throwException("Unimplemented");
-    try {
-      manager().logit(om.writeValueAsString(manager().getResults()));
-    } catch (JsonProcessingException e) {
-      throwException(e);
+  public void testSuite(final SuiteResult ev) throws IOException {
+    currentSuite = ev.name;
+
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "testSuite");
+
+    gen.writeStringField("file", currentFile);
+    outcome(gen, ev);
+
+    endRecord(sw, gen);
+  }
+
+  public void testResult(final TestResult ev) throws IOException {
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "testResult");
+
+    gen.writeStringField("file", currentFile);
+    gen.writeStringField("suite", currentSuite);
+    outcome(gen, ev);
+
+    if (ev.stats != null) {
+      gen.writeFieldName("stats");
+      stats(gen, ev.stats);
+    }
+
+    if (!currentProtocol.isEmpty()) {
+      gen.writeArrayFieldStart("protocol");
+      for (final var p: currentProtocol) {
+        gen.writeString(p);
+      }
+      gen.writeEndArray();
+
+      currentProtocol.clear();
+    }
+
+    endRecord(sw, gen);
+  }
+
+  public void timings(final Timings ev) throws IOException {
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "timings");
+
+    gen.writeStringField("level", ev.level);
+    if (ev.name != null) {
+      gen.writeStringField("name", ev.name);
+    }
+    gen.writeFieldName("stats");
+    stats(gen, ev.stats);
+
+    endRecord(sw, gen);
+  }
+
+  public void finish() throws IOException {
+    final var totals = manager().totals;
+    final var sw = new StringWriter();
+    final var gen = startRecord(sw, "finish");
+
+    gen.writeNumberField("tests", totals.tests);
+    gen.writeNumberField("ok", totals.ok);
+    gen.writeNumberField("failed", totals.failed);
+    gen.writeNumberField("ignored", totals.ignored);
+    gen.writeNumberField("errors", totals.errors);
+    gen.writeNumberField("errorSkipped", totals.errorSkipped);
+    gen.writeNumberField("elapsed", totals.total);
+
+    endRecord(sw, gen);
+
+    if (out != null) {
+      out.close();
+      out = null;
     }
   }
+
+  private JsonGenerator startRecord(final StringWriter sw,
+                                    final String event)
+          throws IOException {
+    final var gen = factory.createGenerator(sw);
+
+    gen.writeStartObject();
+    gen.writeStringField("event", event);
+    gen.writeNumberField("time", System.currentTimeMillis());
+
+    return gen;
+  }
+
+  /* One line per record - flushed so the output can be followed */
+  private void endRecord(final StringWriter sw,
+                         final JsonGenerator gen) throws IOException {
+    gen.writeEndObject();
+    gen.close();
+
+    if (out == null) {
+      manager().logit(sw.toString());
+      return;
+    }
+
+    out.write(sw.toString());
+    out.write('\n');
+    out.flush();
+  }
+
+  private void outcome(final JsonGenerator gen,
+                       final Outcome ev) throws IOException {
+    gen.writeStringField("name", ev.name);
+
+    if (ev.result != null) {
+      gen.writeStringField("result", RESULT_STRINGS.get(ev.result));
+    }
+
+    if (ev.details != null) {
+      gen.writeStringField("details", ev.details);
+    }
+  }
+
+  private void stats(final JsonGenerator gen,
+                     final RequestStats stats) throws IOException {
+    gen.writeStartObject();
+    gen.writeNumberField("count", stats.count);
+    gen.writeNumberField("total", stats.total);
+
+    if (stats.count > 0) {
+      gen.writeNumberField("min", stats.min);
+      gen.writeNumberField("max", stats.max);
+      gen.writeNumberField("mean", stats.total / stats.count);
+      gen.writeNumberField("p50", stats.percentile(50));
+      gen.writeNumberField("p95", stats.percentile(95));
+      gen.writeNumberField("p99", stats.percentile(99));
+
+      // Non-empty buckets only: upper limit in ms and count
+      gen.writeArrayFieldStart("histogram");
+      for (int i = 0; i < RequestStats.numBuckets; i++) {
+        final var ct = stats.getBucketCount(i);
+        if (ct == 0) {
+          continue;
+        }
+
+        gen.writeStartArray();
+        gen.writeNumber(RequestStats.bucketLimit(i));
+        gen.writeNumber(ct);
+        gen.writeEndArray();
+      }
+      gen.writeEndArray();
+    }
+
+    if (!stats.phases.isEmpty()) {
+      // Milliseconds by phase
+      gen.writeObjectFieldStart("phases");
+      for (final var phase: PhaseTimes.Phase.values()) {
+        if (stats.phases.getNanos(phase) != 0) {
+          gen.writeNumberField(phase.name(),
+                               stats.phases.getMillis(phase));
+        }
+      }
+      gen.writeEndObject();
+    }
+
+    if ((stats.bytesSent > 0) || (stats.bytesReceived > 0) ||
+            (stats.tlsHandshakes > 0)) {
+      gen.writeObjectFieldStart("transfer");
+      gen.writeNumberField("bytesSent", stats.bytesSent);
+      gen.writeNumberField("bytesReceived", stats.bytesReceived);
+      gen.writeNumberField("bytesDecoded", stats.bytesDecoded);
+      gen.writeNumberField("tlsHandshakes", stats.tlsHandshakes);
+      gen.writeNumberField("tlsResumed", stats.tlsResumed);
+      gen.writeEndObject();
+    }
+
+    if ((stats.timeouts > 0) || (stats.hedged > 0)) {
+      gen.writeObjectFieldStart("slow");
+      gen.writeNumberField("timeouts", stats.timeouts);
+      gen.writeNumberField("hedged", stats.hedged);
+      gen.writeNumberField("hedgeWins", stats.hedgeWins);
+      gen.writeEndObject();
+    }
+
+    gen.writeEndObject();
+  }
 }
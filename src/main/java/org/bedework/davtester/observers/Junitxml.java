@@ -0,0 +1,292 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.observers;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.RequestStats;
+import org.bedework.davtester.observers.ResultEvent.FileStarted;
+import org.bedework.davtester.observers.ResultEvent.Outcome;
+import org.bedework.davtester.observers.ResultEvent.SuiteResult;
+import org.bedework.davtester.observers.ResultEvent.TestResult;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import static java.lang.String.format;
+import static org.bedework.davtester.Utils.throwException;
+
+/**
+ * A results observer that writes a JUnit style xml report to the file
+ * named by the junitOutput option.
+ *
+ * <p>Each test file becomes a testsuite element and each test a
+ * testcase with classname "file.suite" and the elapsed request time.
+ * Files and suites which failed or were not run as a whole are
+ * reported as a testcase with the file or suite name.
+ *
+ * <p>Only the results for the current test file are held. They are
+ * written and flushed when the next file starts or the run finishes.
+ */
+public class Junitxml extends BaseResultsObserver {
+  private static class Case {
+    final String classname;
+    final String name;
+    final Integer result;
+    final String details;
+    final RequestStats stats;
+
+    Case(final String classname,
+         final String name,
+         final Outcome ev,
+         final RequestStats stats) {
+      this.classname = classname;
+      this.name = name;
+      result = ev.result;
+      details = ev.details;
+      this.stats = stats;
+    }
+  }
+
+  private Writer out;
+  private XMLStreamWriter xml;
+
+  private String currentFile;
+  private String currentSuite;
+  private Instant fileStart;
+  private final List<Case> cases = new ArrayList<>();
+
+  public Junitxml() {
+  }
+
+  @Override
+  public void init(final Manager manager) {
+    super.init(manager);
+
+    final var outName = manager.globals.getJunitOutput();
+    if (outName == null) {
+      throwException("junitOutput must be set for the junitxml observer");
+    }
+
+    try {
+      out = new BufferedWriter(new FileWriter(manager.subs(outName)));
+      xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+    } catch (final Throwable t) {
+      throwException(t);
+    }
+  }
+
+  @Override
+  public void process(final ResultEvent event) {
+    try {
+      switch (event.getMessage()) {
+        case "start":
+          start();
+          break;
+        case "finish":
+          finish();
+          break;
+        case "testFile":
+          testFile((FileStarted)event);
+          break;
+        case "testSuite":
+          testSuite((SuiteResult)event);
+          break;
+        case "testResult":
+          testResult((TestResult)event);
+      }
+    } catch (final XMLStreamException xse) {
+      throwException(xse);
+    }
+  }
+
+  public void start() throws XMLStreamException {
+    xml.writeStartDocument("UTF-8", "1.0");
+    xml.writeCharacters("\n");
+    xml.writeStartElement("testsuites");
+    xml.writeCharacters("\n");
+  }
+
+  public void testFile(final FileStarted ev) throws XMLStreamException {
+    final var name = ev.name.replace("/", ".");
+
+    if (!name.equals(currentFile)) {
+      writeFile();
+
+      currentFile = name;
+      currentSuite = null;
+      fileStart = Instant.now();
+    }
+
+    if (ev.result != null) {
+      // Whole file ignored or failed
+      cases.add(new Case(currentFile, currentFile, ev, null));
+    }
+  }
+
+  public void testSuite(final SuiteResult ev) {
+    currentSuite = ev.name;
+
+    if (ev.result != null) {
+      cases.add(new Case(currentFile, currentSuite, ev, null));
+    }
+  }
+
+  public void testResult(final TestResult ev) {
+    cases.add(new Case(currentFile + "." + currentSuite,
+                       ev.name, ev, ev.stats));
+  }
+
+  public void finish() throws XMLStreamException {
+    writeFile();
+
+    xml.writeEndElement();
+    xml.writeCharacters("\n");
+    xml.writeEndDocument();
+    xml.close();
+
+    try {
+      out.close();
+    } catch (final Throwable t) {
+      throwException(t);
+    }
+  }
+
+  /* Write the testsuite for the current file and forget it */
+  private void writeFile() throws XMLStreamException {
+    if (currentFile == null) {
+      return;
+    }
+
+    int failures = 0;
+    int errors = 0;
+    int skipped = 0;
+    long time = 0;
+
+    for (final var c: cases) {
+      if (c.result != null) {
+        switch (c.result) {
+          case Manager.RESULT_FAILED:
+            failures++;
+            break;
+          case Manager.RESULT_ERROR:
+            errors++;
+            break;
+          case Manager.RESULT_IGNORED:
+            skipped++;
+        }
+      }
+
+      if (c.stats != null) {
+        time += c.stats.total;
+      }
+    }
+
+    xml.writeCharacters("  ");
+    xml.writeStartElement("testsuite");
+    xml.writeAttribute("name", currentFile);
+    xml.writeAttribute("tests", String.valueOf(cases.size()));
+    xml.writeAttribute("failures", String.valueOf(failures));
+    xml.writeAttribute("errors", String.valueOf(errors));
+    xml.writeAttribute("skipped", String.valueOf(skipped));
+    xml.writeAttribute("time", seconds(time));
+    xml.writeAttribute("timestamp",
+                       fileStart.truncatedTo(ChronoUnit.SECONDS)
+                                .toString());
+    xml.writeCharacters("\n");
+
+    for (final var c: cases) {
+      writeCase(c);
+    }
+
+    xml.writeCharacters("  ");
+    xml.writeEndElement();
+    xml.writeCharacters("\n");
+    xml.flush();
+
+    cases.clear();
+    currentFile = null;
+  }
+
+  private void writeCase(final Case c) throws XMLStreamException {
+    xml.writeCharacters("    ");
+    xml.writeStartElement("testcase");
+    xml.writeAttribute("classname", c.classname);
+    xml.writeAttribute("name", c.name);
+
+    final var stats = c.stats;
+    xml.writeAttribute("time",
+                       seconds((stats == null) ? 0 : stats.total));
+
+    if ((stats != null) && (stats.count > 0)) {
+      // Per request timings in milliseconds
+      xml.writeStartElement("properties");
+      property("requests", stats.count);
+      property("minMillis", stats.min);
+      property("maxMillis", stats.max);
+      property("p50Millis", stats.percentile(50));
+      property("p95Millis", stats.percentile(95));
+      xml.writeEndElement();
+    }
+
+    if (c.result != null) {
+      switch (c.result) {
+        case Manager.RESULT_FAILED:
+          problem("failure", c);
+          break;
+        case Manager.RESULT_ERROR:
+          problem("error", c);
+          break;
+        case Manager.RESULT_IGNORED:
+          xml.writeStartElement("skipped");
+          if (c.details != null) {
+            xml.writeAttribute("message", c.details.trim());
+          }
+          xml.writeEndElement();
+      }
+    }
+
+    xml.writeEndElement();
+    xml.writeCharacters("\n");
+  }
+
+  private void property(final String name,
+                        final long val) throws XMLStreamException {
+    xml.writeStartElement("property");
+    xml.writeAttribute("name", name);
+    xml.writeAttribute("value", String.valueOf(val));
+    xml.writeEndElement();
+  }
+
+  private void problem(final String element,
+                       final Case c) throws XMLStreamException {
+    xml.writeStartElement(element);
+
+    final var details = c.details;
+    if (details != null) {
+      final var trimmed = details.trim();
+      final var nl = trimmed.indexOf('\n');
+
+      xml.writeAttribute("message",
+                         (nl < 0) ? trimmed : trimmed.substring(0, nl));
+      xml.writeCharacters(details);
+    }
+
+    xml.writeEndElement();
+  }
+
+  private static String seconds(final long millis) {
+    // Always a "." - the report is read by tools not people
+    return format(Locale.ROOT, "%.3f", (float)millis / 1000);
+  }
+}
@@ -15,8 +15,6 @@
 */
 package org.bedework.davtester.observers;
 
-import org.bedework.davtester.KeyVals;
-
 /**
  * A results observer that prints when a test file is loaded.
  */
@@ -25,22 +23,25 @@ public class Loadfiles extends BaseResultsObserver {
   }
 
   /**
-   * @param message "load"
-   * @param args    3 args: "name": file being loaded, or null for
-   *                last file "current": current int number of files
-   *                loaded "total": int total number of files to load
+   * @param event only "load" events are handled: name is the file
+   *              being loaded, or null after the last file, current
+   *              is the number of files loaded and total the number
+   *              to load
    */
-  public void process(final String message, final KeyVals args) {
-    var name = args.getOnlyString("name");
-    if (name == null) {
+  @Override
+  public void process(final ResultEvent event) {
+    if (!(event instanceof ResultEvent.Load)) {
+      return;
+    }
+
+    final var ev = (ResultEvent.Load)event;
+    if (ev.name == null) {
       manager.logit("Loading files complete.\n");
       return;
     }
 
-    var current = args.getOnlyInt("current");
-    var total = args.getOnlyInt("total");
     manager.logit(
-            String.format("Loading %d of %d: %s", current, total,
-                          name));
+            String.format("Loading %d of %d: %s", ev.current, ev.total,
+                          ev.name));
   }
 }
@@ -15,8 +15,14 @@
 */
 package org.bedework.davtester.observers;
 
-import org.bedework.davtester.KeyVals;
 import org.bedework.davtester.Manager;
+import org.bedework.davtester.observers.ResultEvent.FileStarted;
+import org.bedework.davtester.observers.ResultEvent.Outcome;
+import org.bedework.davtester.observers.ResultEvent.ProtocolDump;
+import org.bedework.davtester.observers.ResultEvent.Progress;
+import org.bedework.davtester.observers.ResultEvent.SuiteResult;
+import org.bedework.davtester.observers.ResultEvent.TestResult;
+import org.bedework.davtester.observers.ResultEvent.Timings;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -42,34 +48,46 @@ public class Log extends BaseResultsObserver {
   private String currentFile;
   private String currentSuite;
 
+  /* Phase times for the whole run - null if none */
+  private String runPhases;
+
+  /* Bytes and handshakes for the whole run - null if none */
+  private String runTransfer;
+
+  /* Timeouts and hedges for the whole run - null if none */
+  private String runTails;
+
   final boolean printDetails = false;
 
   public Log() {
   }
 
   @Override
-  public void process(final String message, final KeyVals args) {
-    switch (message) {
+  public void process(final ResultEvent event) {
+    switch (event.getMessage()) {
       case "start":
         start();
         break;
       case "testProgress":
-        testProgress(args);
+        testProgress((Progress)event);
         break;
       case "testFile":
-        testFile(args);
+        testFile((FileStarted)event);
         break;
       case "finish":
         finish();
         break;
       case "protocol":
-        protocol(args);
+        protocol((ProtocolDump)event);
         break;
       case "testSuite":
-        testSuite(args);
+        testSuite((SuiteResult)event);
         break;
       case "testResult":
-        testResult(args);
+        testResult((TestResult)event);
+        break;
+      case "timings":
+        timings((Timings)event);
     }
   }
 
@@ -82,42 +100,41 @@ public class Log extends BaseResultsObserver {
      */
   }
     
-  public void testProgress(final KeyVals args) {
+  public void testProgress(final Progress ev) {
     manager().logit("");
-    manager().logit(format("File %s of %s", args.getOnlyInt("count"),
-                           args.getOnlyInt("total")));
+    manager().logit(format("File %s of %s", ev.count, ev.total));
   }
     
-  public void testFile(final KeyVals args) {
-    currentFile = args.getOnlyString("name").replace("/", ".");
+  public void testFile(final FileStarted ev) {
+    currentFile = ev.name.replace("/", ".");
     manager().logit("");
-    logResult(currentFile, args);
+    logResult(currentFile, ev);
 
-    if (args.containsKey("result")) {
-      var res = args.getOnlyInt("result");
+    if (ev.result != null) {
+      final int res = ev.result;
       if ((res == Manager.RESULT_FAILED) ||
               (res == Manager.RESULT_ERROR)) {
         var failtxt = format("%s\n%s\n\n%s",
                              RESULT_STRINGS.get(res),
-                             args.getOnlyString("details"),
+                             ev.details,
                              currentFile);
         loggedFailures.add(failtxt);
       }
     }
   }
     
-  public void testSuite(final KeyVals args) {
-    currentSuite = args.getOnlyString("name");
-    var resultName = "  Suite: " + args.getOnlyString("name");
-    logResult(resultName, args);
+  public void testSuite(final SuiteResult ev) {
+    currentSuite = ev.name;
+    var resultName = "  Suite: " + ev.name;
+    logResult(resultName, ev);
 
-    if (args.containsKey("result")) {
-      var res = args.getOnlyInt("result");
+    if (ev.result != null) {
+      final int res = ev.result;
       if ((res == Manager.RESULT_FAILED) ||
               (res == Manager.RESULT_ERROR)) {
         var failtxt = format("%s\n%s\n\n%s/%s",
                              RESULT_STRINGS.get(res),
-                             args.getOnlyString("details"),
+                             ev.details,
                              currentFile,
                              currentSuite);
         loggedFailures.add(failtxt);
@@ -125,20 +142,20 @@ public class Log extends BaseResultsObserver {
     }
   }
     
-  public void testResult(final KeyVals args) {
-    var resultName = "    Test: " + args.getOnlyString("name");
-    logResult(resultName, args);
+  public void testResult(final TestResult ev) {
+    var resultName = "    Test: " + ev.name;
+    logResult(resultName, ev);
 
-    if (args.containsKey("result")) {
-      var res = args.getOnlyInt("result");
+    if (ev.result != null) {
+      final int res = ev.result;
       if ((res == Manager.RESULT_FAILED) ||
               (res == Manager.RESULT_ERROR)) {
         var failtxt = format("%s\n%s\n\n%s/%s/%s",
                              RESULT_STRINGS.get(res),
-                             args.getOnlyString("details"),
+                             ev.details,
                              currentFile,
                              currentSuite,
-                             args.getOnlyString("name"));
+                             ev.name);
         loggedFailures.add(failtxt);
       }
     }
@@ -152,27 +169,51 @@ public class Log extends BaseResultsObserver {
     }
   }
 
-  public void logResult(final String name, final KeyVals args) {
-    if (args.containsKey("result")) {
-      var res = args.getOnlyInt("result");
-      var resultValue = RESULT_STRINGS.get(res);
+  public void logResult(final String name, final Outcome ev) {
+    if (ev.result != null) {
+      var resultValue = RESULT_STRINGS.get(ev.result);
       manager().logit(format("%-60s%-10s", name, resultValue));
     } else {
       manager().logit(format("%s", name));
     }
 
-    if (printDetails && (args.getOnlyString("details") != null)) {
-      manager().logit(args.getOnlyString("details"));
+    if (printDetails && (ev.details != null)) {
+      manager().logit(ev.details);
     }
   }
 
-  public void protocol(final KeyVals args) {
-    var s = args.getOnlyString("protocol");
+  public void protocol(final ProtocolDump ev) {
+    var s = ev.protocol;
     if (s != null) {
       currentProtocol.add(s);
     }
   }
     
+  public void timings(final Timings ev) {
+    if (!ev.level.equals("run")) {
+      return;
+    }
+
+    final var stats = ev.stats;
+    if (!stats.phases.isEmpty()) {
+      runPhases = stats.phases.toString();
+    }
+
+    if ((stats.bytesSent > 0) || (stats.bytesReceived > 0) ||
+            (stats.tlsHandshakes > 0)) {
+      runTransfer = format("sent=%d received=%d decoded=%d " +
+                                   "tlsHandshakes=%d tlsResumed=%d",
+                           stats.bytesSent, stats.bytesReceived,
+                           stats.bytesDecoded, stats.tlsHandshakes,
+                           stats.tlsResumed);
+    }
+
+    if ((stats.timeouts > 0) || (stats.hedged > 0)) {
+      runTails = format("timeouts=%d hedged=%d hedgeWins=%d",
+                        stats.timeouts, stats.hedged, stats.hedgeWins);
+    }
+  }
+
   public void finish () {
     manager().logit("");
     String overall;
@@ -203,6 +244,18 @@ public class Log extends BaseResultsObserver {
                            manager().totals.tests,
                            (float)manager().totals.total / 1000));
 
+    if (runPhases != null) {
+      manager().logit("Time by phase: " + runPhases + "\n");
+    }
+
+    if (runTransfer != null) {
+      manager().logit("Transfer: " + runTransfer + "\n");
+    }
+
+    if (runTails != null) {
+      manager().logit("Slow requests: " + runTails + "\n");
+    }
+
     manager().logit(overall);
   }
 }
@@ -0,0 +1,214 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.observers;
+
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** Delivers events to a single observer on its own thread through
+ * a bounded queue so that slow output does not hold up the tests.
+ *
+ * <p>When the queue is full the policy decides what happens to
+ * droppable events (protocol and trace) - the calling thread may
+ * block or an event may be dropped. All other events are results and
+ * are never dropped: the caller blocks until there is room.
+ */
+public class ObserverQueue implements Logged {
+  public enum Policy {
+    /* Caller waits for room */
+    block,
+
+    /* Discard the oldest droppable event already queued */
+    dropOldest,
+
+    /* Discard the new event */
+    dropNewest;
+
+    public static Policy fromString(final String val) {
+      if (val == null) {
+        return block;
+      }
+
+      for (final var p: values()) {
+        if (p.name().equalsIgnoreCase(val)) {
+          return p;
+        }
+      }
+
+      return throwException("Unknown observer queue policy: " + val);
+    }
+  }
+
+  private static final ResultEvent endEvent = new ResultEvent("end") {
+  };
+
+  private final BaseResultsObserver observer;
+  private final ArrayBlockingQueue<ResultEvent> queue;
+  private final Policy policy;
+  private final Thread consumer;
+
+  private long posted;
+  private long processed;
+  private long dropped;
+
+  /**
+   * @param observer to deliver to
+   * @param size of queue
+   * @param policy when full
+   */
+  public ObserverQueue(final BaseResultsObserver observer,
+                       final int size,
+                       final Policy policy) {
+    this.observer = observer;
+    this.policy = policy;
+    queue = new ArrayBlockingQueue<>(Math.max(size, 1));
+
+    consumer = new Thread(this::consume,
+                          "observer-" +
+                                  observer.getClass().getSimpleName());
+    consumer.setDaemon(true);
+    consumer.start();
+  }
+
+  /** Queue the event.
+   *
+   * @param ev the event
+   */
+  public void post(final ResultEvent ev) {
+    try {
+      if (!ev.isDroppable() || (policy == Policy.block)) {
+        put(ev);
+        return;
+      }
+
+      if (queue.offer(ev)) {
+        counted();
+        return;
+      }
+
+      if ((policy == Policy.dropOldest) && dropOldest()) {
+        if (queue.offer(ev)) {
+          counted();
+          return;
+        }
+      }
+
+      // dropNewest or no room made
+      synchronized (this) {
+        dropped++;
+      }
+    } catch (final InterruptedException ie) {
+      throwException(ie);
+    }
+  }
+
+  /** Wait until all queued events have been processed.
+   */
+  public synchronized void drain() {
+    try {
+      while (processed < posted) {
+        wait();
+      }
+    } catch (final InterruptedException ie) {
+      throwException(ie);
+    }
+  }
+
+  /** Process anything queued then stop the consumer.
+   */
+  public void close() {
+    try {
+      queue.put(endEvent);
+      consumer.join();
+    } catch (final InterruptedException ie) {
+      throwException(ie);
+    }
+
+    final var ndropped = getDropped();
+    if (ndropped > 0) {
+      warn("Observer " + observer.getClass().getSimpleName() +
+                   " dropped " + ndropped + " events");
+    }
+  }
+
+  public synchronized long getDropped() {
+    return dropped;
+  }
+
+  private void put(final ResultEvent ev) throws InterruptedException {
+    synchronized (this) {
+      posted++;
+    }
+    queue.put(ev);
+  }
+
+  private synchronized void counted() {
+    posted++;
+  }
+
+  /* Queue is full - remove the oldest droppable event */
+  private boolean dropOldest() {
+    for (final var queued: queue) {
+      if (queued.isDroppable() && queue.remove(queued)) {
+        synchronized (this) {
+          dropped++;
+          processed++;
+          notifyAll();
+        }
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private void consume() {
+    while (true) {
+      final ResultEvent ev;
+      try {
+        ev = queue.take();
+      } catch (final InterruptedException ie) {
+        return;
+      }
+
+      if (ev == endEvent) {
+        return;
+      }
+
+      try {
+        observer.process(ev);
+
+        if (observer.manager.flushesLog(ev)) {
+          observer.manager.flushLog();
+        }
+      } catch (final Throwable t) {
+        error(t);
+      }
+
+      synchronized (this) {
+        processed++;
+        notifyAll();
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
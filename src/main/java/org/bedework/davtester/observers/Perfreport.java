@@ -0,0 +1,360 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.observers;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.RequestStats;
+import org.bedework.davtester.observers.ResultEvent.FileStarted;
+import org.bedework.davtester.observers.ResultEvent.SuiteResult;
+import org.bedework.davtester.observers.ResultEvent.TestResult;
+import org.bedework.davtester.observers.ResultEvent.Timings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static java.lang.String.format;
+import static org.bedework.davtester.Utils.throwException;
+
+/**
+ * A results observer that reports, at the end of the run, the slowest
+ * tests, suites and files and the distribution of request times.
+ *
+ * <p>Test times may be saved as a baseline (perfSaveBaseline) and a
+ * saved baseline (perfBaseline) compared with the current run. Tests
+ * whose time grew by more than perfThreshold percent are reported as
+ * regressions. Tests under minMillis in both runs are not compared as
+ * their times are mostly noise.
+ *
+ * <p>The baseline is a tab separated file with a line per test:
+ * file, suite, test, total millis and request count.
+ */
+public class Perfreport extends BaseResultsObserver {
+  private static final long minMillis = 10;
+
+  /* An entry in one of the slowest lists */
+  private static class Timed {
+    final String name;
+    final long millis;
+    final int count;
+
+    Timed(final String name,
+          final long millis,
+          final int count) {
+      this.name = name;
+      this.millis = millis;
+      this.count = count;
+    }
+  }
+
+  private static class Regression {
+    final String name;
+    final long baseline;
+    final long current;
+
+    Regression(final String name,
+               final long baseline,
+               final long current) {
+      this.name = name;
+      this.baseline = baseline;
+      this.current = current;
+    }
+  }
+
+  /* Keeps the n slowest in a min heap */
+  private static class Slowest {
+    private final int n;
+    private final PriorityQueue<Timed> heap =
+            new PriorityQueue<>(Comparator.comparingLong(t -> t.millis));
+
+    Slowest(final int n) {
+      this.n = n;
+    }
+
+    void add(final Timed t) {
+      if (n <= 0) {
+        return;
+      }
+
+      if (heap.size() < n) {
+        heap.add(t);
+      } else if (t.millis > heap.peek().millis) {
+        heap.poll();
+        heap.add(t);
+      }
+    }
+
+    List<Timed> sorted() {
+      final var res = new ArrayList<>(heap);
+      res.sort(Comparator.comparingLong((Timed t) -> t.millis)
+                         .reversed());
+      return res;
+    }
+  }
+
+  private Slowest slowestTests;
+  private Slowest slowestSuites;
+  private Slowest slowestFiles;
+
+  private RequestStats runStats;
+
+  /* Millis by test key - null if no baseline */
+  private Map<String, Long> baseline;
+  private Path baselinePath;
+  private int threshold;
+  private int compared;
+  private int missing;
+  private final List<Regression> regressions = new ArrayList<>();
+
+  private BufferedWriter saveBaseline;
+
+  private String currentFile;
+  private String currentSuite;
+
+  public Perfreport() {
+  }
+
+  @Override
+  public void init(final Manager manager) {
+    super.init(manager);
+
+    final var globals = manager.globals;
+    final var n = globals.getPerfSlowest();
+
+    slowestTests = new Slowest(n);
+    slowestSuites = new Slowest(n);
+    slowestFiles = new Slowest(n);
+    threshold = globals.getPerfThreshold();
+
+    try {
+      if (globals.getPerfBaseline() != null) {
+        baselinePath = Paths.get(manager.subs(globals.getPerfBaseline()));
+        baseline = readBaseline(baselinePath);
+      }
+
+      if (globals.getPerfSaveBaseline() != null) {
+        saveBaseline = Files.newBufferedWriter(
+                Paths.get(manager.subs(globals.getPerfSaveBaseline())));
+        saveBaseline.write("# file\tsuite\ttest\tmillis\trequests\n");
+      }
+    } catch (final IOException ie) {
+      throwException(ie);
+    }
+  }
+
+  @Override
+  public void process(final ResultEvent event) {
+    try {
+      switch (event.getMessage()) {
+        case "testFile":
+          testFile((FileStarted)event);
+          break;
+        case "testSuite":
+          testSuite((SuiteResult)event);
+          break;
+        case "testResult":
+          testResult((TestResult)event);
+          break;
+        case "timings":
+          timings((Timings)event);
+          break;
+        case "finish":
+          finish();
+      }
+    } catch (final IOException ie) {
+      throwException(ie);
+    }
+  }
+
+  public void testFile(final FileStarted ev) {
+    if (ev.result == null) {
+      currentFile = ev.name;
+      currentSuite = null;
+    }
+  }
+
+  public void testSuite(final SuiteResult ev) {
+    if (ev.result == null) {
+      currentSuite = ev.name;
+    }
+  }
+
+  public void testResult(final TestResult ev) throws IOException {
+    final var stats = ev.stats;
+    if ((stats == null) || (stats.count == 0)) {
+      return;
+    }
+
+    final var key = clean(currentFile) + "/" + clean(currentSuite) +
+            "/" + clean(ev.name);
+    slowestTests.add(new Timed(key, stats.total, stats.count));
+
+    if (saveBaseline != null) {
+      saveBaseline.write(format("%s\t%s\t%s\t%d\t%d\n",
+                                clean(currentFile),
+                                clean(currentSuite),
+                                clean(ev.name),
+                                stats.total, stats.count));
+    }
+
+    if (baseline == null) {
+      return;
+    }
+
+    final var base = baseline.get(key);
+    if (base == null) {
+      missing++;
+      return;
+    }
+
+    compared++;
+
+    if ((base < minMillis) && (stats.total < minMillis)) {
+      return;
+    }
+
+    if (stats.total * 100 > base * (100 + threshold)) {
+      regressions.add(new Regression(key, base, stats.total));
+    }
+  }
+
+  public void timings(final Timings ev) {
+    final var stats = ev.stats;
+
+    switch (ev.level) {
+      case "suite":
+        slowestSuites.add(new Timed(currentFile + "/" + ev.name,
+                                    stats.total, stats.count));
+        break;
+      case "file":
+        slowestFiles.add(new Timed(ev.name, stats.total, stats.count));
+        break;
+      case "run":
+        runStats = stats;
+    }
+  }
+
+  public void finish() throws IOException {
+    if (saveBaseline != null) {
+      saveBaseline.close();
+      saveBaseline = null;
+    }
+
+    final var mgr = manager();
+
+    mgr.logit("");
+    mgr.logit("=".repeat(70));
+    mgr.logit("Performance report");
+
+    report("Slowest tests", slowestTests);
+    report("Slowest suites", slowestSuites);
+    report("Slowest files", slowestFiles);
+
+    if ((runStats != null) && (runStats.count > 0)) {
+      mgr.logit("");
+      mgr.logit(format("Request times: count=%d min=%dms p50=%dms " +
+                               "p90=%dms p99=%dms max=%dms",
+                       runStats.count, runStats.min,
+                       runStats.percentile(50),
+                       runStats.percentile(90),
+                       runStats.percentile(99),
+                       runStats.max));
+
+      for (int i = 0; i < RequestStats.numBuckets; i++) {
+        final var ct = runStats.getBucketCount(i);
+        if (ct == 0) {
+          continue;
+        }
+
+        mgr.logit(format("  <= %6dms %8d %s",
+                         RequestStats.bucketLimit(i), ct,
+                         "#".repeat((int)Math.max(1, ct * 50 /
+                                 runStats.count))));
+      }
+    }
+
+    if (baseline != null) {
+      mgr.logit("");
+      mgr.logit(format("Compared with baseline %s " +
+                               "(threshold %d%%): " +
+                               "%d tests compared, %d not in baseline, " +
+                               "%d regressions",
+                       baselinePath, threshold,
+                       compared, missing, regressions.size()));
+
+      regressions.sort(Comparator.comparingLong(
+              (Regression r) -> r.current - r.baseline).reversed());
+      for (final var r: regressions) {
+        mgr.logit(format("  %8dms -> %8dms (+%d%%) %s",
+                         r.baseline, r.current,
+                         (r.baseline == 0) ? 100 :
+                                 (r.current - r.baseline) * 100 /
+                                         r.baseline,
+                         r.name));
+      }
+    }
+
+    mgr.logit("=".repeat(70));
+  }
+
+  private void report(final String title,
+                      final Slowest slowest) {
+    final var mgr = manager();
+    final var entries = slowest.sorted();
+
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    mgr.logit("");
+    mgr.logit(title + ":");
+    for (final var t: entries) {
+      mgr.logit(format("  %8dms %6d requests  %s",
+                       t.millis, t.count, t.name));
+    }
+  }
+
+  private static Map<String, Long> readBaseline(final Path path)
+          throws IOException {
+    final var res = new HashMap<String, Long>();
+
+    try (final var lines = Files.lines(path)) {
+      lines.forEach(line -> {
+        if (line.isEmpty() || line.startsWith("#")) {
+          return;
+        }
+
+        final var fields = line.split("\t");
+        if (fields.length < 4) {
+          return;
+        }
+
+        try {
+          res.put(fields[0] + "/" + fields[1] + "/" + fields[2],
+                  Long.parseLong(fields[3]));
+        } catch (final NumberFormatException ignored) {
+        }
+      });
+    }
+
+    return res;
+  }
+
+  /* Names go in a tab separated file */
+  private static String clean(final String val) {
+    if (val == null) {
+      return "null";
+    }
+
+    return val.replace('\t', ' ').replace('\n', ' ');
+  }
+}
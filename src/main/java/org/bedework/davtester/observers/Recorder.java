@@ -0,0 +1,65 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.observers;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.observers.ResultEvent.Exchange;
+import org.bedework.davtester.server.ExchangeArchive;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/**
+ * A results observer that records every http exchange to the archive
+ * named by the recordFile option. The archive may be replayed by
+ * setting the replayFile option.
+ */
+public class Recorder extends BaseResultsObserver {
+  private ExchangeArchive.Writer writer;
+  private int recorded;
+
+  public Recorder() {
+  }
+
+  @Override
+  public void init(final Manager manager) {
+    super.init(manager);
+
+    final var recordFile = manager.globals.getRecordFile();
+    if (recordFile == null) {
+      throwException("recordFile must be set for the recorder observer");
+    }
+
+    try {
+      writer = new ExchangeArchive.Writer(
+              Paths.get(manager.subs(recordFile)));
+    } catch (final IOException ie) {
+      throwException(ie);
+    }
+  }
+
+  @Override
+  public boolean wantsExchanges() {
+    return true;
+  }
+
+  @Override
+  public void process(final ResultEvent event) {
+    try {
+      switch (event.getMessage()) {
+        case "exchange":
+          writer.write(((Exchange)event).entry);
+          recorded++;
+          break;
+        case "finish":
+          writer.close();
+          info("Recorded " + recorded + " exchanges");
+      }
+    } catch (final IOException ie) {
+      throwException(ie);
+    }
+  }
+}
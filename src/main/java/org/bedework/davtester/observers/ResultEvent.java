@@ -0,0 +1,294 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.observers;
+
+import org.bedework.davtester.KeyVals;
+import org.bedework.davtester.RequestStats;
+import org.bedework.davtester.server.ExchangeArchive;
+
+/** Events passed to observers. Each is immutable once created and
+ * may be handed to another thread.
+ *
+ * <p>toKeyVals provides the arguments as they were passed to the
+ * original process(message, args) method for observers not yet
+ * converted to the typed events.
+ */
+public abstract class ResultEvent {
+  private final String message;
+
+  ResultEvent(final String message) {
+    this.message = message;
+  }
+
+  /**
+   * @return message name - one of those listed in BaseResultsObserver
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @return true if this may be discarded when an observer falls behind
+   */
+  public boolean isDroppable() {
+    return false;
+  }
+
+  /**
+   * @return arguments in the old form - may be null
+   */
+  public KeyVals toKeyVals() {
+    return null;
+  }
+
+  public static final Start start = new Start();
+
+  public static final Finish finish = new Finish();
+
+  public static class Start extends ResultEvent {
+    private Start() {
+      super("start");
+    }
+  }
+
+  public static class Finish extends ResultEvent {
+    private Finish() {
+      super("finish");
+    }
+  }
+
+  /** A test file is being loaded.
+   */
+  public static class Load extends ResultEvent {
+    /* Null for end of loading */
+    public final String name;
+    public final int current;
+    public final int total;
+
+    public Load(final String name,
+                final int current,
+                final int total) {
+      super("load");
+      this.name = name;
+      this.current = current;
+      this.total = total;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = new KeyVals();
+      if (name != null) {
+        kvs.put("name", name);
+      }
+      kvs.put("current", current);
+      kvs.put("total", total);
+
+      return kvs;
+    }
+  }
+
+  public static class Progress extends ResultEvent {
+    public final int count;
+    public final int total;
+
+    public Progress(final int count,
+                    final int total) {
+      super("testProgress");
+      this.count = count;
+      this.total = total;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = new KeyVals();
+      kvs.put("count", count);
+      kvs.put("total", total);
+
+      return kvs;
+    }
+  }
+
+  /* Common to file, suite and test results */
+  public static abstract class Outcome extends ResultEvent {
+    public final String name;
+    public final String details;
+
+    /* Null if not yet known */
+    public final Integer result;
+
+    Outcome(final String message,
+            final String name,
+            final String details,
+            final Integer result) {
+      super(message);
+      this.name = name;
+      this.details = details;
+      this.result = result;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = new KeyVals();
+
+      kvs.put("name", name);
+      kvs.put("details", details);
+      kvs.put("result", result);
+
+      return kvs;
+    }
+  }
+
+  /** Start of a test file or, if result is set, the file was not run
+   * or failed as a whole.
+   */
+  public static class FileStarted extends Outcome {
+    public FileStarted(final String name,
+                       final String details,
+                       final Integer result) {
+      super("testFile", name, details, result);
+    }
+  }
+
+  /** Start of a test suite or, if result is set, the suite was not
+   * run.
+   */
+  public static class SuiteResult extends Outcome {
+    public SuiteResult(final String name,
+                       final String details,
+                       final Integer result) {
+      super("testSuite", name, details, result);
+    }
+  }
+
+  public static class TestResult extends Outcome {
+    /* Request stats for the test - may be null if not run */
+    public final RequestStats stats;
+
+    /* True if stats were requested for the test */
+    public final boolean timing;
+
+    public TestResult(final String name,
+                      final String details,
+                      final Integer result,
+                      final RequestStats stats,
+                      final boolean timing) {
+      super("testResult", name, details, result);
+      this.stats = stats;
+      this.timing = timing;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = super.toKeyVals();
+
+      if (timing && (stats != null) && (stats.count > 0)) {
+        final var tkvs = new KeyVals();
+        tkvs.put("total", stats.total);
+        tkvs.put("average", stats.total / stats.count);
+        kvs.put("timing", tkvs);
+      }
+
+      return kvs;
+    }
+  }
+
+  /** Request stats and phase times for a suite or file that was run
+   * or, at the end, for the whole run.
+   */
+  public static class Timings extends ResultEvent {
+    /* "suite", "file" or "run" */
+    public final String level;
+
+    /* Null for the run */
+    public final String name;
+
+    public final RequestStats stats;
+
+    public Timings(final String level,
+                   final String name,
+                   final RequestStats stats) {
+      super("timings");
+      this.level = level;
+      this.name = name;
+      this.stats = stats;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = new KeyVals();
+
+      kvs.put("level", level);
+      if (name != null) {
+        kvs.put("name", name);
+      }
+      kvs.put("count", stats.count);
+      kvs.put("total", stats.total);
+      kvs.put("phases", stats.phases.toString());
+
+      return kvs;
+    }
+  }
+
+  /** A complete http exchange for recording.
+   */
+  public static class Exchange extends ResultEvent {
+    public final ExchangeArchive.Entry entry;
+
+    public Exchange(final ExchangeArchive.Entry entry) {
+      super("exchange");
+      this.entry = entry;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      final var kvs = new KeyVals();
+
+      kvs.put("method", entry.method);
+      kvs.put("uri", entry.uri);
+      kvs.put("status", entry.status);
+
+      return kvs;
+    }
+  }
+
+  /** Request or response dump.
+   */
+  public static class ProtocolDump extends ResultEvent {
+    public final String protocol;
+
+    public ProtocolDump(final String protocol) {
+      super("protocol");
+      this.protocol = protocol;
+    }
+
+    @Override
+    public boolean isDroppable() {
+      return true;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      return new KeyVals("protocol", protocol);
+    }
+  }
+
+  public static class Trace extends ResultEvent {
+    public final String text;
+
+    public Trace(final String text) {
+      super("trace");
+      this.text = text;
+    }
+
+    @Override
+    public boolean isDroppable() {
+      return true;
+    }
+
+    @Override
+    public KeyVals toKeyVals() {
+      return new KeyVals("message", text);
+    }
+  }
+}
@@ -15,8 +15,6 @@
 */
 package org.bedework.davtester.observers;
 
-import org.bedework.davtester.KeyVals;
-
 /**
  * A results observer that prints results to standard output.
  */
@@ -26,19 +24,18 @@ public class Trace extends BaseResultsObserver {
   }
 
   @Override
-  public void process(final String message, final KeyVals args) {
-    if ("trace".equals(message)) {
-      trace(args);
+  public void process(final ResultEvent event) {
+    if (event instanceof ResultEvent.Trace) {
+      trace((ResultEvent.Trace)event);
     }
   }
 
-  public void trace(final KeyVals args) {
-    if (!args.containsKey("message")) {
+  public void trace(final ResultEvent.Trace ev) {
+    if (ev.text == null) {
       return;
     }
 
-    var message = args.getOnlyString("message");
-    manager.logit(message);
+    manager.logit(ev.text);
   }
 }
 
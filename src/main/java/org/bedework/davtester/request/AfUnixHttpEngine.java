@@ -0,0 +1,521 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.PhaseTimes.Phase;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** Sends requests as HTTP/1.1 over an AF_UNIX socket - used when the
+ * serverinfo has a unix element. Connections are kept alive and
+ * reused where the server allows.
+ *
+ * <p>Only what the tester needs is supported: fixed length and
+ * chunked responses, preemptive basic authentication and no
+ * redirects.
+ *
+ * <p>Unix domain sockets need JDK 16 or later. The classes are
+ * looked up when first used so the tester still runs on older JDKs
+ * when no unix socket is configured.
+ */
+class AfUnixHttpEngine extends HttpEngine {
+  private static Method addressOf;
+  private static Method openChannel;
+  private static ProtocolFamily unixFamily;
+
+  private final SocketAddress address;
+
+  private final ConcurrentLinkedDeque<Connection> idle =
+          new ConcurrentLinkedDeque<>();
+
+  /* Nothing was received on a reused connection - safe to resend */
+  private static class StaleConnectionException extends IOException {
+    StaleConnectionException(final IOException cause) {
+      super(cause);
+    }
+  }
+
+  private static class Connection {
+    final SocketChannel channel;
+    final InputStream in;
+    final OutputStream out;
+
+    /* Has handled at least one request */
+    boolean used;
+
+    Connection(final SocketChannel channel) {
+      this.channel = channel;
+      in = new BufferedInputStream(Channels.newInputStream(channel),
+                                   16 * 1024);
+      out = new BufferedOutputStream(Channels.newOutputStream(channel),
+                                     16 * 1024);
+    }
+
+    void close() {
+      try {
+        channel.close();
+      } catch (final Throwable ignored) {
+      }
+    }
+  }
+
+  /**
+   * @param manager the manager
+   * @param path of the socket
+   */
+  AfUnixHttpEngine(final Manager manager,
+                   final String path) {
+    super(manager);
+
+    try {
+      synchronized (AfUnixHttpEngine.class) {
+        if (addressOf == null) {
+          addressOf = Class.forName("java.net.UnixDomainSocketAddress")
+                           .getMethod("of", String.class);
+          openChannel = SocketChannel.class.getMethod(
+                  "open", ProtocolFamily.class);
+          unixFamily = StandardProtocolFamily.valueOf("UNIX");
+        }
+      }
+
+      address = (SocketAddress)addressOf.invoke(null, path);
+    } catch (final ClassNotFoundException |
+            NoSuchMethodException |
+            IllegalArgumentException e) {
+      throw new RuntimeException(
+              "Unix domain sockets need JDK 16 or later", e);
+    } catch (final Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  @Override
+  public CompletableFuture<CloseableHttpResponse> send(
+          final HttpRequestBase meth,
+          final String user,
+          final String pswd,
+          final boolean auth,
+          final HttpClientContext context) {
+    try {
+      return CompletableFuture.completedFuture(
+              call(meth, user, pswd, auth, context));
+    } catch (final Throwable t) {
+      return CompletableFuture.failedFuture(t);
+    }
+  }
+
+  @Override
+  protected boolean blocking() {
+    return true;
+  }
+
+  private CloseableHttpResponse call(final HttpRequestBase meth,
+                                     final String user,
+                                     final String pswd,
+                                     final boolean auth,
+                                     final HttpClientContext context) {
+    final PhaseTimes phases;
+    if (context == null) {
+      phases = null;
+    } else {
+      phases = (PhaseTimes)context.getAttribute(
+              TimedRequestExecutor.phasesAttr);
+    }
+
+    try {
+      if (meth.isAborted()) {
+        throw new IOException("Request aborted");
+      }
+
+      final var body = requestBody(meth);
+      final var head = head(meth, body, user, pswd, auth);
+
+      var conn = idle.pollFirst();
+      if (conn != null) {
+        try {
+          return exchange(conn, meth, head, body, phases);
+        } catch (final StaleConnectionException ignored) {
+          // Server closed the idle connection - try a new one
+        }
+      }
+
+      conn = new Connection(
+              (SocketChannel)openChannel.invoke(null, unixFamily));
+      try {
+        conn.channel.connect(address);
+      } catch (final IOException e) {
+        conn.close();
+        throw e;
+      }
+
+      return exchange(conn, meth, head, body, phases);
+    } catch (final Throwable t) {
+      return throwException(t);
+    }
+  }
+
+  @Override
+  public void close() {
+    while (true) {
+      final var conn = idle.pollFirst();
+      if (conn == null) {
+        return;
+      }
+
+      conn.close();
+    }
+  }
+
+  private CloseableHttpResponse exchange(
+          final Connection conn,
+          final HttpRequestBase meth,
+          final byte[] head,
+          final HttpEntity body,
+          final PhaseTimes phases) throws IOException {
+    final var wasUsed = conn.used;
+    conn.used = true;
+    String statusLine = null;
+
+    // Blocking channel reads ignore timeouts - abort closes the channel
+    meth.setCancellable(() -> {
+      conn.close();
+      return true;
+    });
+
+    try {
+      var span = start(phases, Phase.send);
+      conn.out.write(head);
+      if (body != null) {
+        body.writeTo(conn.out);
+      }
+      conn.out.flush();
+      end(span);
+
+      span = start(phases, Phase.ttfb);
+      statusLine = readLine(conn.in);
+      var headers = readHeaders(conn.in);
+      end(span);
+
+      // Skip any interim responses
+      while (status(statusLine) / 100 == 1) {
+        statusLine = readLine(conn.in);
+        headers = readHeaders(conn.in);
+      }
+
+      final var status = status(statusLine);
+      final var res = new BufferedResponse(version(statusLine),
+                                           status,
+                                           reason(statusLine, status));
+      var keepAlive = true;
+      String contentType = null;
+      String transferEncoding = null;
+      long contentLength = -1;
+
+      for (final var hdr: headers) {
+        res.addHeader(hdr[0], hdr[1]);
+
+        final var name = hdr[0].toLowerCase(Locale.ROOT);
+        switch (name) {
+          case "content-type":
+            contentType = hdr[1];
+            break;
+          case "content-length":
+            contentLength = Long.parseLong(hdr[1].trim());
+            break;
+          case "transfer-encoding":
+            transferEncoding = hdr[1].toLowerCase(Locale.ROOT);
+            break;
+          case "connection":
+            if (hdr[1].equalsIgnoreCase("close")) {
+              keepAlive = false;
+            }
+            break;
+          default:
+        }
+      }
+
+      span = start(phases, Phase.read);
+      final byte[] respBody;
+      if (meth.getMethod().equals("HEAD") ||
+              (status == 204) || (status == 304)) {
+        respBody = null;
+      } else if ((transferEncoding != null) &&
+              transferEncoding.contains("chunked")) {
+        respBody = readChunked(conn.in);
+      } else if (contentLength >= 0) {
+        respBody = conn.in.readNBytes((int)contentLength);
+        if (respBody.length < contentLength) {
+          throw new EOFException("Truncated response");
+        }
+      } else {
+        // Delimited by close
+        respBody = conn.in.readAllBytes();
+        keepAlive = false;
+      }
+      end(span);
+
+      if ((respBody != null) && (respBody.length > 0)) {
+        final var ent = new ByteArrayEntity(respBody);
+        ent.setContentType(contentType);
+        res.setEntity(ent);
+      }
+
+      meth.setCancellable(null);
+
+      if (keepAlive) {
+        idle.offerFirst(conn);
+      } else {
+        conn.close();
+      }
+
+      return res;
+    } catch (final IOException e) {
+      conn.close();
+
+      if (wasUsed && (statusLine == null) && !meth.isAborted()) {
+        throw new StaleConnectionException(e);
+      }
+
+      throw e;
+    }
+  }
+
+  /* The entity to send - buffered if its length is not known
+     in advance.
+   */
+  private static HttpEntity requestBody(final HttpRequestBase meth)
+          throws IOException {
+    if (!(meth instanceof HttpEntityEnclosingRequest)) {
+      return null;
+    }
+
+    final var ent = ((HttpEntityEnclosingRequest)meth).getEntity();
+    if ((ent == null) ||
+            ((ent.getContentLength() >= 0) && ent.isRepeatable())) {
+      return ent;
+    }
+
+    final var buffered = new ByteArrayEntity(EntityUtils.toByteArray(ent));
+    buffered.setContentType(ent.getContentType());
+
+    return buffered;
+  }
+
+  private byte[] head(final HttpRequestBase meth,
+                      final HttpEntity body,
+                      final String user,
+                      final String pswd,
+                      final boolean auth) {
+    final var uri = meth.getURI();
+    final var sb = new StringBuilder(256);
+
+    sb.append(meth.getMethod()).append(' ');
+    if (uri.getRawPath() == null) {
+      sb.append('/');
+    } else {
+      sb.append(uri.getRawPath());
+    }
+    if (uri.getRawQuery() != null) {
+      sb.append('?').append(uri.getRawQuery());
+    }
+    sb.append(" HTTP/1.1\r\n");
+
+    var host = uri.getHost();
+    if (host == null) {
+      host = "localhost";
+    }
+    sb.append("Host: ").append(host).append("\r\n");
+
+    var hasContentType = false;
+    var hasAuthorization = false;
+
+    for (final var hdr: meth.getAllHeaders()) {
+      final var name = hdr.getName().toLowerCase(Locale.ROOT);
+      if (name.equals("host") || name.equals("content-length") ||
+              name.equals("transfer-encoding")) {
+        continue;
+      }
+
+      if (name.equals("content-type")) {
+        hasContentType = true;
+      } else if (name.equals("authorization")) {
+        hasAuthorization = true;
+      }
+
+      sb.append(hdr.getName()).append(": ")
+        .append(hdr.getValue()).append("\r\n");
+    }
+
+    if (meth instanceof HttpEntityEnclosingRequest) {
+      if ((body != null) && !hasContentType &&
+              (body.getContentType() != null)) {
+        sb.append("Content-Type: ")
+          .append(body.getContentType().getValue()).append("\r\n");
+      }
+
+      sb.append("Content-Length: ")
+        .append((body == null) ? 0 : body.getContentLength())
+        .append("\r\n");
+    }
+
+    if (auth && !hasAuthorization) {
+      final var authorization = basicAuthorization(user, pswd);
+      if (authorization != null) {
+        sb.append("Authorization: ").append(authorization)
+          .append("\r\n");
+      }
+    }
+
+    sb.append("\r\n");
+
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String readLine(final InputStream in)
+          throws IOException {
+    final var sb = new StringBuilder(64);
+
+    while (true) {
+      final int ch = in.read();
+      if (ch < 0) {
+        throw new EOFException("Connection closed");
+      }
+
+      if (ch == '\n') {
+        final var len = sb.length();
+        if ((len > 0) && (sb.charAt(len - 1) == '\r')) {
+          sb.setLength(len - 1);
+        }
+        return sb.toString();
+      }
+
+      sb.append((char)ch);
+    }
+  }
+
+  private static List<String[]> readHeaders(
+          final InputStream in) throws IOException {
+    final var res = new ArrayList<String[]>();
+
+    while (true) {
+      final var line = readLine(in);
+      if (line.isEmpty()) {
+        return res;
+      }
+
+      final var pos = line.indexOf(':');
+      if (pos < 0) {
+        continue;
+      }
+
+      res.add(new String[]{line.substring(0, pos).trim(),
+                           line.substring(pos + 1).trim()});
+    }
+  }
+
+  private static byte[] readChunked(final InputStream in)
+          throws IOException {
+    final var res = new ByteArrayOutputStream();
+
+    while (true) {
+      var line = readLine(in);
+      final var semi = line.indexOf(';');
+      if (semi >= 0) {
+        line = line.substring(0, semi);
+      }
+
+      final var size = Integer.parseInt(line.trim(), 16);
+      if (size == 0) {
+        // Discard any trailers
+        readHeaders(in);
+        return res.toByteArray();
+      }
+
+      final var chunk = in.readNBytes(size);
+      if (chunk.length < size) {
+        throw new EOFException("Truncated chunk");
+      }
+      res.write(chunk);
+      readLine(in);
+    }
+  }
+
+  private static int status(final String statusLine)
+          throws IOException {
+    final var parts = statusLine.split(" ", 3);
+    if (parts.length < 2) {
+      throw new IOException("Bad status line: " + statusLine);
+    }
+
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (final NumberFormatException nfe) {
+      throw new IOException("Bad status line: " + statusLine);
+    }
+  }
+
+  private static ProtocolVersion version(final String statusLine) {
+    if (statusLine.startsWith("HTTP/1.0")) {
+      return new ProtocolVersion("HTTP", 1, 0);
+    }
+
+    return new ProtocolVersion("HTTP", 1, 1);
+  }
+
+  private static String reason(final String statusLine,
+                               final int status) {
+    final var parts = statusLine.split(" ", 3);
+    if (parts.length == 3) {
+      return parts[2];
+    }
+
+    return reasonPhrase(status);
+  }
+
+  private static PhaseTimes.Span start(final PhaseTimes phases,
+                                       final Phase phase) {
+    if (phases == null) {
+      return null;
+    }
+
+    return phases.start(phase);
+  }
+
+  private static void end(final PhaseTimes.Span span) {
+    if (span != null) {
+      span.end();
+    }
+  }
+}
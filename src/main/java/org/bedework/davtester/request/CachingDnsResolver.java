@@ -0,0 +1,59 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.apache.http.conn.DnsResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Resolves host names for new connections, keeping the addresses
+ * for a fixed time rather than going back to the resolver each time.
+ * Load runs open many connections to a few hosts.
+ *
+ * <p>Failed lookups are not cached.
+ */
+public class CachingDnsResolver implements DnsResolver {
+  private final long ttlMillis;
+
+  private static class Entry {
+    final InetAddress[] addresses;
+    final long expires;
+
+    Entry(final InetAddress[] addresses,
+          final long expires) {
+      this.addresses = addresses;
+      this.expires = expires;
+    }
+  }
+
+  private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+  /**
+   * @param ttlSecs how long to keep the addresses for a host
+   */
+  public CachingDnsResolver(final int ttlSecs) {
+    ttlMillis = ttlSecs * 1000L;
+  }
+
+  @Override
+  public InetAddress[] resolve(final String host)
+          throws UnknownHostException {
+    final var key = host.toLowerCase(Locale.ROOT);
+    final var now = System.currentTimeMillis();
+
+    final var entry = cache.get(key);
+    if ((entry != null) && (entry.expires > now)) {
+      return entry.addresses.clone();
+    }
+
+    final var addresses = InetAddress.getAllByName(host);
+    cache.put(key, new Entry(addresses, now + ttlMillis));
+
+    return addresses.clone();
+  }
+}
@@ -0,0 +1,67 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Manager;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** The blocking Apache HttpClient used by the manager. The request
+ * is executed on the calling thread so send returns a completed
+ * future.
+ */
+class ClassicHttpEngine extends HttpEngine {
+  ClassicHttpEngine(final Manager manager) {
+    super(manager);
+  }
+
+  @Override
+  public CompletableFuture<CloseableHttpResponse> send(
+          final HttpRequestBase meth,
+          final String user,
+          final String pswd,
+          final boolean auth,
+          final HttpClientContext context) {
+    try {
+      return CompletableFuture.completedFuture(
+              call(meth, user, pswd, auth, context));
+    } catch (final Throwable t) {
+      return CompletableFuture.failedFuture(t);
+    }
+  }
+
+  @Override
+  protected boolean blocking() {
+    return true;
+  }
+
+  private CloseableHttpResponse call(final HttpRequestBase meth,
+                                     final String user,
+                                     final String pswd,
+                                     final boolean auth,
+                                     final HttpClientContext context) {
+    try {
+      String cert = null;
+      if (context != null) {
+        cert = (String)context.getAttribute(certAttr);
+      }
+
+      if (auth) {
+        return manager.getHttpClient(user, pswd, cert)
+                      .execute(meth, context);
+      }
+
+      return manager.getUnauthHttpClient(cert).execute(meth, context);
+    } catch (final IOException e) {
+      return throwException(e);
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Metrics;
+import org.bedework.davtester.PhaseTimes.Phase;
+import org.bedework.davtester.RequestStats;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** Transport compression. Responses are decoded as they are read
+ * whichever engine fetched them, counting the bytes received and
+ * the time spent decoding. Request bodies may be gzipped.
+ *
+ * <p>Brotli is not offered - the JDK has no decoder for it.
+ */
+public class ContentCoding {
+  /** Value for the Accept-Encoding header */
+  public static final String acceptEncoding = "gzip, deflate";
+
+  /* Counts bytes read and the time spent reading them */
+  private static class CountingStream extends FilterInputStream {
+    long bytes;
+    long nanos;
+
+    CountingStream(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final var start = System.nanoTime();
+      final int ch = super.read();
+      nanos += System.nanoTime() - start;
+
+      if (ch >= 0) {
+        bytes++;
+      }
+
+      return ch;
+    }
+
+    @Override
+    public int read(final byte[] b,
+                    final int off,
+                    final int len) throws IOException {
+      final var start = System.nanoTime();
+      final int n = super.read(b, off, len);
+      nanos += System.nanoTime() - start;
+
+      if (n > 0) {
+        bytes += n;
+      }
+
+      return n;
+    }
+  }
+
+  /* The body as the caller sees it - records the totals on close */
+  private static class ResponseStream extends FilterInputStream {
+    private final CountingStream wire;
+    private final CountingStream decoded;
+    private final Metrics metrics;
+    private final RequestStats stats;
+    private boolean closed;
+
+    ResponseStream(final InputStream in,
+                   final CountingStream wire,
+                   final CountingStream decoded,
+                   final Metrics metrics,
+                   final RequestStats stats) {
+      super(in);
+      this.wire = wire;
+      this.decoded = decoded;
+      this.metrics = metrics;
+      this.stats = stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      super.close();
+
+      final long decodedBytes;
+      if (decoded == null) {
+        decodedBytes = wire.bytes;
+      } else {
+        decodedBytes = decoded.bytes;
+      }
+
+      metrics.received(wire.bytes, decodedBytes);
+
+      if (stats != null) {
+        stats.bytesReceived += wire.bytes;
+        stats.bytesDecoded += decodedBytes;
+
+        if (decoded != null) {
+          // Decoding time is what the decoder took beyond the reads
+          stats.phases.add(Phase.decode,
+                           Math.max(0, decoded.nanos - wire.nanos));
+        }
+      }
+    }
+  }
+
+  private static class DecodingEntity extends HttpEntityWrapper {
+    private final String encoding;
+    private final Metrics metrics;
+    private final RequestStats stats;
+    private InputStream content;
+
+    DecodingEntity(final HttpEntity entity,
+                   final String encoding,
+                   final Metrics metrics,
+                   final RequestStats stats) {
+      super(entity);
+      this.encoding = encoding;
+      this.metrics = metrics;
+      this.stats = stats;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      if (content != null) {
+        return content;
+      }
+
+      final var raw = super.getContent();
+      if (raw == null) {
+        return null;
+      }
+
+      final var wire = new CountingStream(raw);
+
+      final CountingStream decoded;
+      final InputStream in;
+
+      if (encoding == null) {
+        decoded = null;
+        in = wire;
+      } else if (encoding.equals("deflate")) {
+        decoded = new CountingStream(new DeflateInputStream(wire));
+        in = decoded;
+      } else {
+        decoded = new CountingStream(new GZIPInputStream(wire, 8192));
+        in = decoded;
+      }
+
+      // Buffered so timing is per block rather than per byte
+      content = new ResponseStream(new BufferedInputStream(in, 8192),
+                                   wire, decoded, metrics, stats);
+
+      return content;
+    }
+
+    @Override
+    public long getContentLength() {
+      if (encoding == null) {
+        return super.getContentLength();
+      }
+
+      return -1;
+    }
+
+    @Override
+    public Header getContentEncoding() {
+      if (encoding == null) {
+        return super.getContentEncoding();
+      }
+
+      return null;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return false;
+    }
+
+    @Override
+    public boolean isStreaming() {
+      return true;
+    }
+  }
+
+  /** Replace the response entity with one that decodes any gzip or
+   * deflate content encoding and records the bytes received when
+   * its content is closed.
+   *
+   * <p>As for the Apache ResponseContentEncoding interceptor, the
+   * headers describing the encoded body are removed when it is
+   * decoded.
+   *
+   * @param resp the response
+   * @param metrics for run totals
+   * @param stats for the request - may be null
+   */
+  public static void decodeResponse(final HttpResponse resp,
+                                    final Metrics metrics,
+                                    final RequestStats stats) {
+    final var ent = resp.getEntity();
+    if (ent == null) {
+      return;
+    }
+
+    final var encoding = encoding(resp, ent);
+
+    resp.setEntity(new DecodingEntity(ent, encoding, metrics, stats));
+
+    if (encoding != null) {
+      resp.removeHeaders("Content-Length");
+      resp.removeHeaders("Content-Encoding");
+      resp.removeHeaders("Content-MD5");
+    }
+  }
+
+  /**
+   * @param entity to compress - must be repeatable
+   * @return gzipped copy with its content encoding set
+   */
+  public static HttpEntity gzip(final HttpEntity entity) {
+    try {
+      final var len = entity.getContentLength();
+      final var bos = new ByteArrayOutputStream(
+              (len > 0) ? (int)Math.min(len / 4, 1 << 20) : 1024);
+
+      try (final var gzos = new GZIPOutputStream(bos, 8192)) {
+        entity.writeTo(gzos);
+      }
+
+      final var res = new ByteArrayEntity(bos.toByteArray());
+      res.setContentType(entity.getContentType());
+      res.setContentEncoding("gzip");
+
+      return res;
+    } catch (final IOException e) {
+      return throwException(e);
+    }
+  }
+
+  /**
+   * @param entity request body
+   * @return bytes that will be sent - 0 if not known
+   */
+  public static long length(final HttpEntity entity) {
+    if (entity == null) {
+      return 0;
+    }
+
+    return Math.max(0, entity.getContentLength());
+  }
+
+  private static String encoding(final HttpResponse resp,
+                                 final HttpEntity ent) {
+    var hdr = ent.getContentEncoding();
+    if (hdr == null) {
+      hdr = resp.getFirstHeader("Content-Encoding");
+    }
+
+    if (hdr == null) {
+      return null;
+    }
+
+    final var val = hdr.getValue().trim().toLowerCase(Locale.ROOT);
+    if (val.equals("gzip") || val.equals("x-gzip") ||
+            val.equals("deflate")) {
+      return val;
+    }
+
+    // Identity or something we can't decode - pass it through
+    return null;
+  }
+
+  private ContentCoding() {
+  }
+}
@@ -16,13 +16,22 @@
 package org.bedework.davtester.request;
 
 import org.bedework.davtester.DavTesterBase;
+import org.bedework.davtester.FixtureCache;
 import org.bedework.davtester.KeyVals;
 import org.bedework.davtester.Manager;
 import org.bedework.davtester.XmlDefs;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileEntity;
 import org.w3c.dom.Element;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
 import static java.lang.String.format;
@@ -114,24 +123,111 @@ public class Data extends DavTesterBase {
     }
   }
 
+  /**
+   * @return variables the body refers to - empty if it is not
+   *         substituted
+   */
+  public List<String> variables() {
+    final var res = new ArrayList<String>();
+
+    if (substitute) {
+      if (value != null) {
+        res.addAll(FixtureCache.findVars(value));
+      } else if (filepath != null) {
+        res.addAll(manager.fixtures.variables(path()));
+      }
+    }
+
+    for (final var key: substitutions.keySet()) {
+      final var val = substitutions.getOnlyString(key);
+      if (val != null) {
+        res.addAll(FixtureCache.findVars(val));
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @return true if the body is a file sent as is - no substitutions
+   */
+  public boolean isRawFile() {
+    return (value == null) && (filepath != null) &&
+            !substitute && !generate && substitutions.isEmpty();
+  }
+
+  /**
+   * @return path of the file sent as is - null if not a raw file
+   */
+  public String rawFilePath() {
+    if (!isRawFile()) {
+      return null;
+    }
+
+    return path();
+  }
+
+  /** The body as an entity. A file with no substitutions is streamed
+   * from disk, anything else is encoded as UTF-8.
+   *
+   * @param count of the request
+   * @return entity for the request body - null for none
+   */
+  public HttpEntity getEntity(final int count) {
+    final AbstractHttpEntity entity;
+
+    if (isRawFile()) {
+      entity = new FileEntity(new File(path()));
+    } else {
+      final var bytes = getBytes(count);
+      if (bytes == null) {
+        return null;
+      }
+
+      entity = new ByteArrayEntity(bytes);
+    }
+
+    entity.setContentType(contentType);
+
+    return entity;
+  }
+
+  /**
+   * @param count of the request
+   * @return UTF-8 encoded body - null for none
+   */
+  public byte[] getBytes(final int count) {
+    if ((value == null) && (filepath != null) && substitute &&
+            !generate && substitutions.isEmpty()) {
+      // Same as getValue - the fixture holds the encoded form
+      setRequestCount(count);
+      return manager.fixtures.get(path()).getBytes();
+    }
+
+    final var val = getValue(count);
+    if (val == null) {
+      return null;
+    }
+
+    return val.getBytes(StandardCharsets.UTF_8);
+  }
+
   public String getValue(final int count) {
     String dataStr = null;
 
-    manager.serverInfo.addextrasubs(new KeyVals("$request_count:",
-                                                String.valueOf(count)));
+    setRequestCount(count);
 
     if (value != null) {
       dataStr = value;
     } else if (filepath != null) {
       // read in the file data
-      final String fname =
-              Objects.requireNonNullElseGet(nextpath, () -> filepath);
-
-      dataStr = fileToString(fname);
+      dataStr = fileToString(path());
     }
 
-    dataStr = manager.serverInfo.subs(dataStr);
-    dataStr = manager.serverInfo.extrasubs(dataStr);
+    if (substitute) {
+      dataStr = manager.serverInfo.subs(dataStr);
+      dataStr = manager.serverInfo.extrasubs(dataStr);
+    }
 
     if (!substitutions.isEmpty()) {
       dataStr = manager.serverInfo.subs(dataStr, substitutions);
@@ -148,6 +244,15 @@ public class Data extends DavTesterBase {
     return dataStr;
   }
 
+  private String path() {
+    return Objects.requireNonNullElseGet(nextpath, () -> filepath);
+  }
+
+  private void setRequestCount(final int count) {
+    manager.serverInfo.addextrasubs(new KeyVals("$request_count:",
+                                                String.valueOf(count)));
+  }
+
   private String generateCalendarData(final String dataVal,
                                       final int count) {
     // FIXME: does not work for events with recurrence overrides.
@@ -0,0 +1,152 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** What a request - or a group of them - touches on the server and
+ * in the substitutions: the uri paths read and written, the variables
+ * used and those grabbed from the response. Two footprints which do
+ * not conflict may be run alongside each other.
+ *
+ * <p>Only what is visible in the test is recorded. Side effects a
+ * server may have elsewhere - e.g. scheduling messages delivered to
+ * another user's inbox - are not, which is why POST is treated as a
+ * barrier.
+ */
+public class Footprint {
+  /** Paths read - a read of a collection covers its members */
+  public final List<String> reads = new ArrayList<>();
+
+  /** Paths created, changed or deleted */
+  public final List<String> writes = new ArrayList<>();
+
+  /** Variables referred to */
+  public final Set<String> uses = new TreeSet<>();
+
+  /** Variables set from responses */
+  public final Set<String> grabs = new TreeSet<>();
+
+  /** Credentials used - see Request.authKey */
+  public final Set<String> authKeys = new TreeSet<>();
+
+  /** True if nothing may overlap this */
+  public boolean barrier;
+
+  /** Add another footprint to this one - e.g. for each request of a
+   * test.
+   *
+   * @param val to add
+   */
+  public void add(final Footprint val) {
+    reads.addAll(val.reads);
+    writes.addAll(val.writes);
+    uses.addAll(val.uses);
+    grabs.addAll(val.grabs);
+    authKeys.addAll(val.authKeys);
+    barrier |= val.barrier;
+  }
+
+  /**
+   * @param that other footprint
+   * @return true if this and that must not overlap
+   */
+  public boolean conflicts(final Footprint that) {
+    if (barrier || that.barrier) {
+      return true;
+    }
+
+    // Credentials are set on the shared client as each request is sent
+    if ((authKeys.size() > 1) || !authKeys.equals(that.authKeys)) {
+      return true;
+    }
+
+    if (intersects(uses, that.grabs) ||
+            intersects(grabs, that.uses) ||
+            intersects(grabs, that.grabs)) {
+      return true;
+    }
+
+    return overlaps(writes, that.reads) ||
+            overlaps(writes, that.writes) ||
+            overlaps(reads, that.writes);
+  }
+
+  /**
+   * @param uri request uri - possibly absolute
+   * @return the path without any query or fragment
+   */
+  public static String path(final String uri) {
+    if (uri == null) {
+      return "";
+    }
+
+    var res = uri;
+
+    final var schemePos = res.indexOf("://");
+    if (schemePos >= 0) {
+      final var pathPos = res.indexOf('/', schemePos + 3);
+      if (pathPos < 0) {
+        res = "/";
+      } else {
+        res = res.substring(pathPos);
+      }
+    }
+
+    for (final var c: new char[]{'?', '#'}) {
+      final var pos = res.indexOf(c);
+      if (pos >= 0) {
+        res = res.substring(0, pos);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @param path to test
+   * @param parent possible collection
+   * @return true if path is the same as or a member of parent
+   */
+  public static boolean within(final String path,
+                               final String parent) {
+    if (path.equals(parent)) {
+      return true;
+    }
+
+    if (parent.endsWith("/")) {
+      return path.startsWith(parent);
+    }
+
+    return path.startsWith(parent + "/");
+  }
+
+  private static boolean overlaps(final List<String> paths,
+                                  final List<String> others) {
+    for (final var p: paths) {
+      for (final var o: others) {
+        if (within(p, o) || within(o, p)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean intersects(final Collection<String> a,
+                                    final Collection<String> b) {
+    for (final var s: a) {
+      if (b.contains(s)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,163 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** The hosts requests are spread over when the serverinfo has a hosts
+ * element - e.g. the members of a server pool behind one name. Each
+ * request goes to the next host in turn or, for least-connections, to
+ * the host with the fewest requests in progress.
+ *
+ * <p>An empty pool means requests go to the serverinfo host as
+ * before.
+ */
+public class HostPool {
+  /** Values for the balance attribute */
+  public static final String roundRobin = "round-robin";
+  public static final String leastConnections = "least-connections";
+
+  public static class Member {
+    public final String host;
+
+    /* -1 for the server port */
+    private final int port;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    Member(final String host,
+           final int port) {
+      this.host = host;
+      this.port = port;
+    }
+
+    /**
+     * @param serverPort port from the serverinfo
+     * @return port for requests to this host
+     */
+    public int port(final int serverPort) {
+      if (port < 0) {
+        return serverPort;
+      }
+
+      return port;
+    }
+
+    /** A request to this host is starting.
+     */
+    public void started() {
+      active.incrementAndGet();
+    }
+
+    /** A request to this host has finished.
+     */
+    public void ended() {
+      active.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+      if (port < 0) {
+        return host;
+      }
+
+      return host + ":" + port;
+    }
+  }
+
+  private final List<Member> members = new ArrayList<>();
+
+  private boolean least;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * @param val round-robin or least-connections - null for the default
+   *            round-robin
+   */
+  public void setBalance(final String val) {
+    if ((val == null) || roundRobin.equals(val)) {
+      least = false;
+    } else if (leastConnections.equals(val)) {
+      least = true;
+    } else {
+      throwException("Unknown balance: " + val);
+    }
+  }
+
+  /**
+   * @param val host or host:port
+   */
+  public void add(final String val) {
+    final var pos = val.lastIndexOf(':');
+
+    // A bracketed IPv6 literal may have colons of its own
+    if ((pos < 0) || (val.indexOf(']', pos) >= 0)) {
+      members.add(new Member(val, -1));
+      return;
+    }
+
+    try {
+      members.add(new Member(val.substring(0, pos),
+                             Integer.parseInt(val.substring(pos + 1))));
+    } catch (final NumberFormatException nfe) {
+      throwException("Bad host: " + val);
+    }
+  }
+
+  /** Requests go to the serverinfo host again.
+   */
+  public void clear() {
+    members.clear();
+  }
+
+  /**
+   * @return true for no pool
+   */
+  public boolean isEmpty() {
+    return members.isEmpty();
+  }
+
+  /**
+   * @return the members
+   */
+  public List<Member> getMembers() {
+    return members;
+  }
+
+  /**
+   * @return host for the next request - null for no pool
+   */
+  public Member pick() {
+    final var sz = members.size();
+    if (sz == 0) {
+      return null;
+    }
+
+    // Start from the next in turn so ties are shared out
+    final var start = Math.floorMod(next.getAndIncrement(), sz);
+    if (!least) {
+      return members.get(start);
+    }
+
+    var res = members.get(start);
+    for (int i = 1; i < sz; i++) {
+      final var m = members.get((start + i) % sz);
+      if (m.active.get() < res.active.get()) {
+        res = m;
+      }
+    }
+
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    return (least ? leastConnections : roundRobin) + " " + members;
+  }
+}
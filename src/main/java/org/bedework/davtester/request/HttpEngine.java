@@ -0,0 +1,180 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Manager;
+
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import static org.bedework.davtester.Utils.throwException;
+
+/** The transport used to send requests. The request is built as an
+ * Apache HttpRequestBase whatever the engine and the response is
+ * returned as a CloseableHttpResponse so the rest of the tester does
+ * not depend on which is in use.
+ *
+ * <p>send returns when the request is under way - callers which can
+ * overlap requests use that. execute waits for the response, applying
+ * the server request timeouts and hedging slow requests - see
+ * RequestGuard.
+ */
+public abstract class HttpEngine {
+  /** Context attribute holding the name of the client certificate
+   * for the request, if any */
+  public static final String certAttr = "davtester.cert";
+
+  protected final Manager manager;
+
+  /** A response already read into memory - nothing to close.
+   */
+  protected static class BufferedResponse extends BasicHttpResponse
+          implements CloseableHttpResponse {
+    BufferedResponse(final ProtocolVersion version,
+                     final int status,
+                     final String reason) {
+      super(new BasicStatusLine(version, status, reason));
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  protected HttpEngine(final Manager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * @param manager the manager
+   * @param name "classic", "jdk" or null for classic
+   * @return a new engine
+   */
+  public static HttpEngine forName(final Manager manager,
+                                   final String name) {
+    if ((name == null) || "classic".equalsIgnoreCase(name)) {
+      return new ClassicHttpEngine(manager);
+    }
+
+    if ("jdk".equalsIgnoreCase(name)) {
+      return new JdkHttpEngine(manager, true);
+    }
+
+    if ("jdk1".equalsIgnoreCase(name)) {
+      return new JdkHttpEngine(manager, false);
+    }
+
+    return throwException("Unknown http engine: " + name);
+  }
+
+  /**
+   * @param manager the manager
+   * @param path of the socket
+   * @return a new engine sending over a unix domain socket
+   */
+  public static HttpEngine forUnixSocket(final Manager manager,
+                                         final String path) {
+    return new AfUnixHttpEngine(manager, path);
+  }
+
+  /** Send the request.
+   *
+   * @param meth the request
+   * @param user for authentication - null for the server default
+   * @param pswd for authentication - null for the server default
+   * @param auth false for an unauthenticated request
+   * @param context may carry the PhaseTimes to update - may be null
+   * @return completed with the response
+   */
+  public abstract CompletableFuture<CloseableHttpResponse> send(
+          HttpRequestBase meth,
+          String user,
+          String pswd,
+          boolean auth,
+          HttpClientContext context);
+
+  /** Send the request and wait for the response.
+   *
+   * @param meth the request
+   * @param user for authentication - null for the server default
+   * @param pswd for authentication - null for the server default
+   * @param auth false for an unauthenticated request
+   * @param context may carry the PhaseTimes to update - may be null
+   * @return the response
+   */
+  public CloseableHttpResponse execute(final HttpRequestBase meth,
+                                       final String user,
+                                       final String pswd,
+                                       final boolean auth,
+                                       final HttpClientContext context) {
+    return manager.getRequestGuard()
+                  .execute(this, meth, user, pswd, auth, context);
+  }
+
+  /**
+   * @return true if send does not return until the response has
+   *         arrived - it must then be called on another thread to
+   *         overlap requests
+   */
+  protected boolean blocking() {
+    return false;
+  }
+
+  /** Release any resources.
+   */
+  public void close() {
+  }
+
+  /** For engines which only do preemptive basic authentication.
+   *
+   * @param user null for the server default
+   * @param pswd null for the server default
+   * @return value for an Authorization header - null for no user
+   */
+  protected String basicAuthorization(final String user,
+                                      final String pswd) {
+    var u = user;
+    var p = pswd;
+
+    if (u == null) {
+      u = manager.serverInfo.user;
+    }
+
+    if (p == null) {
+      p = manager.serverInfo.pswd;
+    }
+
+    if (u == null) {
+      return null;
+    }
+
+    final var creds = u + ":" + ((p == null) ? "" : p);
+    return "Basic " + Base64.getEncoder().encodeToString(
+            creds.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param status http status
+   * @return the standard reason phrase or ""
+   */
+  protected static String reasonPhrase(final int status) {
+    final var reason = EnglishReasonPhraseCatalog.INSTANCE
+            .getReason(status, Locale.ENGLISH);
+    if (reason == null) {
+      return "";
+    }
+
+    return reason;
+  }
+}
@@ -0,0 +1,261 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.PhaseTimes.Phase;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Sends requests with the JDK HttpClient. Requests are sent
+ * asynchronously and, by default, HTTP/2 is negotiated where the
+ * server supports it so many requests may share one connection.
+ *
+ * <p>Unlike the classic engine, authentication is preemptive basic
+ * only, redirects are never followed, client certificates are not
+ * supported and TLS handshakes are not recorded - the JDK client
+ * does not expose them.
+ */
+class JdkHttpEngine extends HttpEngine {
+  /* Headers the JDK client sets itself and will not accept */
+  private static final Set<String> restrictedHeaders =
+          Set.of("connection", "content-length", "expect", "host",
+                 "upgrade");
+
+  private static final ProtocolVersion http11 =
+          new ProtocolVersion("HTTP", 1, 1);
+
+  private static final ProtocolVersion http2 =
+          new ProtocolVersion("HTTP", 2, 0);
+
+  private final HttpClient client;
+
+  /* Null if the client default is used */
+  private final ExecutorService executor;
+
+  /**
+   * @param manager the manager
+   * @param http2 true to negotiate HTTP/2
+   */
+  JdkHttpEngine(final Manager manager,
+                final boolean http2) {
+    super(manager);
+
+    final var builder = HttpClient.newBuilder()
+                                  .followRedirects(
+                                          HttpClient.Redirect.NEVER);
+
+    if (http2) {
+      builder.version(HttpClient.Version.HTTP_2);
+    } else {
+      builder.version(HttpClient.Version.HTTP_1_1);
+    }
+
+    builder.sslContext(manager.getTls().get(null));
+
+    final var connect = manager.serverInfo.timeouts.connect;
+    if (connect > 0) {
+      builder.connectTimeout(Duration.ofMillis(connect));
+    }
+
+    final var threads = manager.globals.getHttpEngineThreads();
+    if (threads > 0) {
+      executor = Executors.newFixedThreadPool(threads, r -> {
+        final var t = new Thread(r, "http-engine");
+        t.setDaemon(true);
+        return t;
+      });
+      builder.executor(executor);
+    } else {
+      executor = null;
+    }
+
+    client = builder.build();
+  }
+
+  @Override
+  public CompletableFuture<CloseableHttpResponse> send(
+          final HttpRequestBase meth,
+          final String user,
+          final String pswd,
+          final boolean auth,
+          final HttpClientContext context) {
+    final HttpRequest req;
+    try {
+      req = toJdk(meth, user, pswd, auth);
+    } catch (final Throwable t) {
+      return CompletableFuture.failedFuture(t);
+    }
+
+    final PhaseTimes phases;
+    if (context == null) {
+      phases = null;
+    } else {
+      phases = (PhaseTimes)context.getAttribute(
+              TimedRequestExecutor.phasesAttr);
+    }
+
+    final var start = System.nanoTime();
+    final var headersAt = new long[1];
+
+    final HttpResponse.BodyHandler<byte[]> handler = info -> {
+      headersAt[0] = System.nanoTime();
+      return HttpResponse.BodySubscribers.ofByteArray();
+    };
+
+    return client.sendAsync(req, handler).thenApply(resp -> {
+      if (phases != null) {
+        final var now = System.nanoTime();
+        // May complete on a client thread
+        synchronized (phases) {
+          phases.add(Phase.ttfb, headersAt[0] - start);
+          phases.add(Phase.read, now - headersAt[0]);
+        }
+      }
+
+      return toApache(resp);
+    });
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private HttpRequest toJdk(final HttpRequestBase meth,
+                            final String user,
+                            final String pswd,
+                            final boolean auth) throws IOException {
+    final var builder = HttpRequest.newBuilder(meth.getURI());
+
+    var hasContentType = false;
+    var hasAuthorization = false;
+
+    for (final var hdr: meth.getAllHeaders()) {
+      final var name = hdr.getName().toLowerCase(Locale.ROOT);
+      if (restrictedHeaders.contains(name)) {
+        continue;
+      }
+
+      if (name.equals("content-type")) {
+        hasContentType = true;
+      } else if (name.equals("authorization")) {
+        hasAuthorization = true;
+      }
+
+      builder.header(hdr.getName(), hdr.getValue());
+    }
+
+    var body = HttpRequest.BodyPublishers.noBody();
+
+    if (meth instanceof HttpEntityEnclosingRequest) {
+      final var ent = ((HttpEntityEnclosingRequest)meth).getEntity();
+
+      if (ent != null) {
+        final var len = ent.getContentLength();
+
+        if ((len > 0) && ent.isRepeatable()) {
+          // Streamed - e.g. a file - rather than copied
+          body = HttpRequest.BodyPublishers.fromPublisher(
+                  HttpRequest.BodyPublishers.ofInputStream(
+                          () -> content(ent)),
+                  len);
+        } else {
+          body = HttpRequest.BodyPublishers.ofByteArray(
+                  EntityUtils.toByteArray(ent));
+        }
+
+        if (!hasContentType && (ent.getContentType() != null)) {
+          builder.header("Content-Type",
+                         ent.getContentType().getValue());
+        }
+      }
+    }
+
+    builder.method(meth.getMethod(), body);
+
+    final var limit = manager.serverInfo.timeouts.request(meth.getMethod());
+    if (limit > 0) {
+      builder.timeout(Duration.ofMillis(limit));
+    }
+
+    if (auth && !hasAuthorization) {
+      final var authorization = basicAuthorization(user, pswd);
+      if (authorization != null) {
+        builder.header("Authorization", authorization);
+      }
+    }
+
+    return builder.build();
+  }
+
+  private static InputStream content(final HttpEntity ent) {
+    try {
+      return ent.getContent();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static CloseableHttpResponse toApache(
+          final HttpResponse<byte[]> resp) {
+    final ProtocolVersion version;
+    if (resp.version() == HttpClient.Version.HTTP_2) {
+      version = http2;
+    } else {
+      version = http11;
+    }
+
+    final var status = resp.statusCode();
+    final var reason = reasonPhrase(status);
+
+    final var res = new BufferedResponse(version, status, reason);
+
+    for (final var hdr: resp.headers().map().entrySet()) {
+      if (hdr.getKey().startsWith(":")) {
+        // HTTP/2 pseudo header
+        continue;
+      }
+
+      for (final var val: hdr.getValue()) {
+        res.addHeader(hdr.getKey(), val);
+      }
+    }
+
+    final var body = resp.body();
+    if ((body != null) && (body.length > 0)) {
+      final var ent = new ByteArrayEntity(body);
+      final var ctype = resp.headers().firstValue("Content-Type");
+
+      ctype.ifPresent(ent::setContentType);
+
+      res.setEntity(ent);
+    }
+
+    return res;
+  }
+}
@@ -1,8 +1,11 @@
 package org.bedework.davtester.request;
 
 import org.bedework.davtester.DavTesterBase;
+import org.bedework.davtester.FixtureCache;
 import org.bedework.davtester.KeyVals;
 import org.bedework.davtester.Manager;
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.PhaseTimes.Phase;
 import org.bedework.davtester.RequestStats;
 import org.bedework.davtester.Result;
 import org.bedework.davtester.Serverinfo.KeyVal;
@@ -10,6 +13,8 @@ import org.bedework.davtester.UriIdPw;
 import org.bedework.davtester.Utils;
 import org.bedework.davtester.XmlDefs;
 import org.bedework.davtester.ical.Icalendar;
+import org.bedework.davtester.request.RequestTemplate.Special;
+import org.bedework.davtester.server.ExchangeArchive;
 import org.bedework.davtester.verifiers.Verifier.VerifyResult;
 import org.bedework.util.dav.DavUtil.MultiStatusResponse;
 import org.bedework.util.http.HttpUtil;
@@ -26,11 +31,10 @@ import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.w3c.dom.Element;
 
 import java.io.ByteArrayOutputStream;
@@ -48,7 +52,7 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -224,6 +228,14 @@ public class Request extends DavTesterBase {
   public final List<GrabElement> grabjson = new ArrayList<>();
   public final List<GrabElement> grabelement = new ArrayList<>();
 
+  /* Stats and phase times for the current run - null if not being
+     timed */
+  private RequestStats requestStats;
+  private PhaseTimes phases;
+
+  /* Compiled from the method, uri and headers */
+  private RequestTemplate template;
+
   //nc = {}  // Keep track of nonce count
 
   /** Just flags a pause.
@@ -262,6 +274,7 @@ public class Request extends DavTesterBase {
     if (nodeMatches(node, XmlDefs.ELEMENT_REQUEST)) {
       final var req = new Request(manager, typeRequest);
       req.parseXML(node);
+      req.template();
 
       return req;
     }
@@ -271,6 +284,7 @@ public class Request extends DavTesterBase {
       req.parseXML(node);
 
       req.method = "DELAY";
+      req.template();
 
       return req;
     }
@@ -282,6 +296,7 @@ public class Request extends DavTesterBase {
       if (req.method == null) {
         req.method = "GET";
       }
+      req.template();
 
       return req;
     }
@@ -302,30 +317,163 @@ public class Request extends DavTesterBase {
     return data;
   }
 
+  /* The compiled request - rebuilt if the definition was changed */
+  private RequestTemplate template() {
+    final var tmpl = template;
+    if ((tmpl != null) &&
+            tmpl.matches(method, ruri, headers, host, port)) {
+      return tmpl;
+    }
+
+    template = new RequestTemplate(method, ruri, headers,
+                                   manager.serverInfo.getScheme(),
+                                   host, port);
+
+    return template;
+  }
+
   public String getURI() {
-    var uri = manager.serverInfo.extrasubs(ruri);
-    if (uri.contains("**")) {
-      if (!uri.contains("?") || (uri.indexOf("?") > uri.indexOf("**"))) {
-        uri = uri.replace("**", UUID.randomUUID().toString());
-      }
-    } else if (uri.contains("##")) {
-      if (!uri.contains("?") || uri.indexOf("?") > uri.indexOf("##")) {
-        uri = uri.replace("##", String.valueOf(count));
-      }
+    return template().bindUri(manager.serverInfo, count);
+  }
+
+  /** Start sections may run independent requests alongside each
+   * other. A request is not independent if it is a special method,
+   * grabs values later requests may use, uses the grabbed location or
+   * traces its exchange.
+   *
+   * @return true if only the request uri can order this request
+   */
+  public boolean independent() {
+    if ((this instanceof PauseRequest) || httpTrace) {
+      return false;
+    }
+
+    final var tmpl = template();
+    if ((tmpl.special != Special.NONE) || (tmpl.httpMethod == null)) {
+      return false;
     }
 
-    return uri;
+    if ((graburi != null) || (grabcount != null) ||
+            !grabheader.isEmpty() || !grabproperty.isEmpty() ||
+            !grabcalprop.isEmpty() || !grabcalparam.isEmpty() ||
+            !grabjson.isEmpty() || !grabelement.isEmpty()) {
+      return false;
+    }
+
+    return !"$".equals(ruri);
   }
 
-  public List<Header> getHeaders () {
-    final var si = manager.serverInfo;
-    final var res = new ArrayList<Header>();
+  /* Methods which do not change the server */
+  private static final Set<String> readMethods =
+          Set.of("GET", "HEAD", "OPTIONS", "PROPFIND", "REPORT",
+                 "SEARCH");
 
+  /** For the scheduler. The uri is bound with the substitutions as
+   * they are now, so variables grabbed by earlier requests which have
+   * not yet run leave it unknown - such a request is a barrier.
+   *
+   * @return what this request touches
+   */
+  public Footprint footprint() {
+    final var res = new Footprint();
+    final var tmpl = template();
+
+    res.authKeys.add(authKey());
+
+    if (graburi != null) {
+      res.grabs.add(graburi);
+    }
+    if (grabcount != null) {
+      res.grabs.add(grabcount);
+    }
+    for (final var kvs: List.of(grabheader, grabproperty,
+                                grabcalprop, grabcalparam)) {
+      for (final var kv: kvs) {
+        res.grabs.add(variable(kv.val));
+      }
+    }
+    for (final var ges: List.of(grabjson, grabelement)) {
+      for (final var ge: ges) {
+        for (final var var: ge.variables) {
+          res.grabs.add(variable(var));
+        }
+      }
+    }
+
+    if (ruri != null) {
+      res.uses.addAll(FixtureCache.findVars(ruri));
+    }
     for (final var hdr: headers) {
-      res.add(new BasicHeader(hdr.getName(),
-                              si.extrasubs(hdr.getValue())));
+      res.uses.addAll(FixtureCache.findVars(hdr.getValue()));
+    }
+    if (data != null) {
+      res.uses.addAll(data.variables());
+    }
+    for (final var verify: verifiers) {
+      res.uses.addAll(verify.variables());
+    }
+
+    if ((this instanceof PauseRequest) || httpTrace ||
+            (tmpl.special != Special.NONE) ||
+            (tmpl.httpMethod == null) ||
+            tmpl.httpMethod.equals("POST") ||
+            "$".equals(ruri)) {
+      res.barrier = true;
+      return res;
     }
 
+    final var uri = getURI();
+    if ((uri == null) || uri.contains("$")) {
+      res.barrier = true;
+      return res;
+    }
+
+    final List<String> paths;
+    if (readMethods.contains(tmpl.httpMethod)) {
+      paths = res.reads;
+    } else {
+      paths = res.writes;
+    }
+
+    paths.add(Footprint.path(uri));
+
+    // MOVE and COPY
+    for (final var hdr: getHeaders()) {
+      if (hdr.getName().equalsIgnoreCase("Destination")) {
+        if (hdr.getValue().contains("$")) {
+          res.barrier = true;
+        }
+        res.writes.add(Footprint.path(hdr.getValue()));
+      }
+    }
+
+    return res;
+  }
+
+  /* The variable name from a grab - which may be wrapped in a
+     function, e.g. basename($x:)
+   */
+  private static String variable(final String val) {
+    final var start = val.indexOf('(');
+    if ((start < 0) || !val.endsWith(")")) {
+      return val;
+    }
+
+    return val.substring(start + 1, val.length() - 1);
+  }
+
+  /** Credentials are set on the client when a request is sent so
+   * concurrent requests must use the same ones.
+   *
+   * @return requests with equal keys use the same credentials
+   */
+  public String authKey() {
+    return auth + "|" + getUser() + "|" + getPswd() + "|" + cert;
+  }
+
+  public List<Header> getHeaders () {
+    final var res = template().bindHeaders(manager.serverInfo);
+
     // Content type
     if (data != null) {
       res.add(new BasicHeader("Content-Type", data.contentType));
@@ -486,26 +634,32 @@ public class Request extends DavTesterBase {
 
   /** Send content
    *
-   * @param content the content as bytes
-   * @param contentType its type
+   * @param req the method
+   * @param entity the content
    */
   private static void setContent(final HttpRequestBase req,
-                                 final byte[] content,
-                                 final String contentType) {
-    if (content == null) {
-      return;
-    }
-
+                                 final HttpEntity entity) {
     if (!(req instanceof HttpEntityEnclosingRequestBase)) {
       throwException("Invalid operation for method " +
                              req.getMethod());
     }
 
-    final HttpEntityEnclosingRequestBase eem = (HttpEntityEnclosingRequestBase)req;
+    ((HttpEntityEnclosingRequestBase)req).setEntity(entity);
+  }
+
+  /* The body as text for display or recording - entities are
+     repeatable so this does not affect what is sent.
+   */
+  private static String entityText(final HttpEntity entity) {
+    if (entity == null) {
+      return null;
+    }
 
-    final ByteArrayEntity entity = new ByteArrayEntity(content);
-    entity.setContentType(contentType);
-    eem.setEntity(entity);
+    try {
+      return EntityUtils.toString(entity, StandardCharsets.UTF_8);
+    } catch (final IOException e) {
+      return throwException(e);
+    }
   }
 
   @Override
@@ -534,14 +688,6 @@ public class Request extends DavTesterBase {
         ruri = "1";
       }
     }
-
-    /* HOST2
-    if (getYesNoAttributeValue(node, XmlDefs.ATTR_HOST2, false)) {
-      host = manager.serverInfo.host2;
-      port = manager.serverInfo.port2;
-      afunix = manager.serverInfo.afunix2;
-    }
-     */
   }
 
   @Override
@@ -733,8 +879,16 @@ public class Request extends DavTesterBase {
                              final int count) {
     this.count = count;
 
+    requestStats = stats;
+    if (stats == null) {
+      phases = null;
+    } else {
+      phases = stats.phases;
+    }
+
     if (this instanceof PauseRequest) {
       // Useful for pausing at a particular point
+      manager.drainObservers();
       print("Paused");
       System.console().readLine();
 
@@ -749,17 +903,14 @@ public class Request extends DavTesterBase {
     }
 
     // Handle special methods
-    String methodPar = null;
+    final var tmpl = template();
+    final var methodPar = tmpl.param;
 
-    final var split = method.split(" ");
-    if (split.length > 1) {
-      methodPar = split[1];
-    }
-
-    String method = split[0];
+    // Set for methods which get the grabbed location
+    var getGrabbed = false;
 
-    switch (method) {
-      case "DELETEALL":
+    switch (tmpl.special) {
+      case DELETEALL:
         for (final var requri: ruris) {
           final var hrefs = doFindall(new UriIdPw(requri, getUser(), getPswd()),
                                       format("%s | %s", label, "DELETEALL"));
@@ -775,7 +926,7 @@ public class Request extends DavTesterBase {
         }
         return DoRequestResult.ok();
 
-      case "DELAY":
+      case DELAY:
         // ruri contains a numeric delay in seconds
         final int delay;
         if (ruri == null) {
@@ -793,12 +944,12 @@ public class Request extends DavTesterBase {
         }
         return DoRequestResult.ok();
 
-      case "GETNEW":
-      case "GETOTHER":
+      case GETNEW:
+      case GETOTHER:
         final Result<String> dfnRes =
                 doFindnew(UriIdPw.fromRequest(this),
                           label,
-                          method.equals("GETOTHER"));
+                          tmpl.special == Special.GETOTHER);
         if (!dfnRes.ok) {
           return DoRequestResult.fail(dfnRes.message);
         }
@@ -808,11 +959,10 @@ public class Request extends DavTesterBase {
                   new KeyVals(graburi,
                               manager.currentTestfile.grabbedLocation));
         }
-        method = "GET";
-        ruri = "$";
+        getGrabbed = true;
         break;
 
-      case "FINDNEW":
+      case FINDNEW:
         final Result<String> dfnRes1 =
                 doFindnew(UriIdPw.fromRequest(this),
                           label, false);
@@ -827,7 +977,7 @@ public class Request extends DavTesterBase {
         }
         return DoRequestResult.ok();
 
-      case "GETCONTAINS":
+      case GETCONTAINS:
         final Result<String> dfcRes =
                 doFindcontains(UriIdPw.fromRequest(this),
                                          methodPar, label);
@@ -843,45 +993,54 @@ public class Request extends DavTesterBase {
                   new KeyVals(graburi,
                               manager.currentTestfile.grabbedLocation));
         }
-        method = "GET";
-        ruri = "$";
+        getGrabbed = true;
         break;
 
-      case "WAITCOUNT":
+      case WAITCOUNT:
         final var wcount = waitCount(methodPar);
-        for (final var wdruri: ruris) {
-          final var waitres = doWaitcount(new UriIdPw(wdruri, getUser(), getPswd()),
-                                          wcount,
-                                          label);
-          if (!waitres.ok) {
-            return DoRequestResult.fail(format("Count did not change: %s",
-                                               waitres.message));
+        final var waitStart = phaseStart(Phase.wait);
+        try {
+          for (final var wdruri: ruris) {
+            final var waitres = doWaitcount(new UriIdPw(wdruri, getUser(), getPswd()),
+                                            wcount,
+                                            label);
+            if (!waitres.ok) {
+              return DoRequestResult.fail(format("Count did not change: %s",
+                                                 waitres.message));
+            }
           }
+        } finally {
+          phaseEnd(waitStart);
         }
 
         return DoRequestResult.ok();
 
-      case "WAITDELETEALL":
-        for (final var wdruri: ruris) {
-          final var waitres =
-                  doWaitcount(new UriIdPw(wdruri, getUser(), getPswd()),
-                              waitCount(methodPar),
-                              label);
-          if (!waitres.ok) {
-            return DoRequestResult.fail(
-                    format("Count did not change: %s",
-                           waitres.message));
-          }
+      case WAITDELETEALL:
+        final var waitDelStart = phaseStart(Phase.wait);
+        try {
+          for (final var wdruri: ruris) {
+            final var waitres =
+                    doWaitcount(new UriIdPw(wdruri, getUser(), getPswd()),
+                                waitCount(methodPar),
+                                label);
+            if (!waitres.ok) {
+              return DoRequestResult.fail(
+                      format("Count did not change: %s",
+                             waitres.message));
+            }
 
-          final var hrefs =
-                  doFindall(new UriIdPw(wdruri, getUser(), getPswd()),
-                            format("%s | %s", label, "DELETEALL"));
-          if (!hrefs.ok) {
-            return DoRequestResult.fail(hrefs.message);
-          }
+            final var hrefs =
+                    doFindall(new UriIdPw(wdruri, getUser(), getPswd()),
+                              format("%s | %s", label, "DELETEALL"));
+            if (!hrefs.ok) {
+              return DoRequestResult.fail(hrefs.message);
+            }
 
-          doDeleteall(hrefs.val,
-                      format("%s | %s", label, "DELETEALL"));
+            doDeleteall(hrefs.val,
+                        format("%s | %s", label, "DELETEALL"));
+          }
+        } finally {
+          phaseEnd(waitDelStart);
         }
 
         return DoRequestResult.ok();
@@ -889,13 +1048,30 @@ public class Request extends DavTesterBase {
 
     final DoRequestResult drr = new DoRequestResult();
 
-    ruri = getURI();
-    if (ruri.equals("$")) {
+    final var method = tmpl.httpMethod;
+
+    final var subsStart = phaseStart(Phase.subs);
+    String ruri;
+    if (getGrabbed) {
       ruri = manager.currentTestfile.grabbedLocation;
+    } else {
+      ruri = tmpl.bindUri(manager.serverInfo, count);
+      if ("$".equals(ruri)) {
+        ruri = manager.currentTestfile.grabbedLocation;
+      }
     }
 
     final var headers = getHeaders();
-    final var data = getDataVal();
+    phaseEnd(subsStart);
+
+    final var dataStart = phaseStart(Phase.body);
+    final HttpEntity body;
+    if (data == null) {
+      body = null;
+    } else {
+      body = data.getEntity(count);
+    }
+    phaseEnd(dataStart);
 
     // Cache delayed delete
     if (endDelete) {
@@ -907,23 +1083,27 @@ public class Request extends DavTesterBase {
     }
 
     if (details) {
-      drr.append(format("        %s: %s\n", method, ruri));
+      drr.append(format("        %s: %s\n",
+                        getGrabbed ? method : tmpl.name, ruri));
     }
 
     // Special for GETCHANGED
-    if (method.equals("GETCHANGED")) {
-      if (!doWaitchanged(new UriIdPw(ruri, getUser(), getPswd()),
-                         etags.get(ruri),
-                         label)) {
+    if (tmpl.special == Special.GETCHANGED) {
+      final var waitStart = phaseStart(Phase.wait);
+      final var changed =
+              doWaitchanged(new UriIdPw(ruri, getUser(), getPswd()),
+                            etags.get(ruri),
+                            label);
+      phaseEnd(waitStart);
+
+      if (!changed) {
         return DoRequestResult.fail("Resource did not change");
       }
-      method = "GET";
     }
 
-    boolean getWait = method.equals("GETWAIT");
+    boolean getWait = tmpl.special == Special.GETWAIT;
     int wcount = 0;
     if (getWait) {
-      method = "GET";
       wcount = waitCount(methodPar);
     }
 
@@ -931,13 +1111,10 @@ public class Request extends DavTesterBase {
       stats.startTimer();
     }
 
+    final var member = poolMember();
     final URI uri;
     try {
-      uri = new URIBuilder(new URI(ruri))
-              .setScheme(manager.serverInfo.getScheme())
-              .setHost(host)
-              .setPort(port)
-              .build();
+      uri = tmpl.target(ruri, member);
     } catch (final Throwable t) {
       return DoRequestResult.fail("Bad uri " + t.getMessage());
     }
@@ -948,24 +1125,40 @@ public class Request extends DavTesterBase {
     }
 
     var hasUserAgent = false;
+    var hasAcceptEncoding = false;
 
     if (!Util.isEmpty(headers)) {
       for (final Header hdr: headers) {
         if (hdr.getName().equalsIgnoreCase("User-Agent")) {
           hasUserAgent = true;
+        } else if (hdr.getName().equalsIgnoreCase("Accept-Encoding")) {
+          hasAcceptEncoding = true;
         }
         meth.addHeader(hdr);
       }
     }
 
     if (!hasUserAgent && (label != null)) {
-      meth.addHeader(new BasicHeader("User-Agent",
-                                     "Cal-Tester: " +
-                                             Utils.encodeUtf8(label)));
+      meth.addHeader(tmpl.userAgent(label));
     }
 
-    if (data != null) {
-      setContent(meth, data.getBytes(), getData().contentType);
+    if (!hasAcceptEncoding && manager.globals.getResponseCompression()) {
+      meth.addHeader(new BasicHeader("Accept-Encoding",
+                                     ContentCoding.acceptEncoding));
+    }
+
+    HttpEntity sendBody = body;
+    if (body != null) {
+      final var minCompress = manager.globals.getRequestCompression();
+      if ((minCompress > 0) &&
+              (ContentCoding.length(body) >= minCompress)) {
+        final var bodyStart = phaseStart(Phase.body);
+        sendBody = ContentCoding.gzip(body);
+        meth.setHeader("Content-Encoding", "gzip");
+        phaseEnd(bodyStart);
+      }
+
+      setContent(meth, sendBody);
     }
 
     if (httpTrace) {
@@ -974,16 +1167,34 @@ public class Request extends DavTesterBase {
 
     int ct = 0;
     do { // So we can repeat for getwait
-      try (final CloseableHttpResponse resp = execute(meth)) {
+      final var metricsStart = manager.metrics.requestStarted();
+      var completed = false;
+
+      if (member != null) {
+        member.started();
+        manager.metrics.hostRequest(member.toString());
+      }
+
+      try (final CloseableHttpResponse resp = timedExecute(meth)) {
+        completed = true;
+        sent(ContentCoding.length(sendBody), stats);
+        ContentCoding.decodeResponse(resp, manager.metrics, stats);
         final int status = HttpUtil.getStatus(resp);
         if (getWait) {
           ct++;
+          manager.metrics.waitPoll("getwait");
 
           getWait = (ct <= wcount) &&
                   (status == HttpServletResponse.SC_NOT_FOUND);
 
           if (getWait) {
+            if (manager.recordingExchanges()) {
+              recordExchange(meth, body, resp, null);
+            }
+
+            final var waitStart = phaseStart(Phase.wait);
             manager.delay();
+            phaseEnd(waitStart);
             continue;
           }
         }
@@ -991,14 +1202,16 @@ public class Request extends DavTesterBase {
         final HttpEntity ent = resp.getEntity();
 
         if (ent != null) {
-          final InputStream in = ent.getContent();
-
-          if (in != null) {
-            drr.responseData = readContent(in, ent.getContentLength(),
-                                           ContentType
-                                                   .getOrDefault(ent)
-                                                   .getCharset());
+          final var readStart = phaseStart(Phase.read);
+          try (final InputStream in = ent.getContent()) {
+            if (in != null) {
+              drr.responseData = readContent(in, ent.getContentLength(),
+                                             ContentType
+                                                     .getOrDefault(ent)
+                                                     .getCharset());
+            }
           }
+          phaseEnd(readStart);
         }
 
         drr.reason = resp.getStatusLine().getReasonPhrase();
@@ -1007,9 +1220,19 @@ public class Request extends DavTesterBase {
         drr.etag = HttpUtil.getFirstHeaderValue(resp, "etag");
         drr.responseHeaders = Arrays.asList(resp.getAllHeaders());
         drr.status = HttpUtil.getStatus(resp);
+
+        if (manager.recordingExchanges()) {
+          recordExchange(meth, body, resp, drr.responseData);
+        }
       } catch (final Throwable t) {
         throwException(t);
       } finally {
+        manager.metrics.requestEnded(method, metricsStart, completed);
+
+        if (member != null) {
+          member.ended();
+        }
+
         if (httpTrace) {
           httpTraceOff();
         }
@@ -1022,10 +1245,12 @@ public class Request extends DavTesterBase {
     }
 
     if (doverify && (drr.responseData != null)) {
+      final var verifyStart = phaseStart(Phase.verify);
       final var vres = verifyRequest(ruri,
                                      drr.responseHeaders,
                                      drr.status,
                                      drr.responseData);
+      phaseEnd(verifyStart);
       if (!vres.ok) {
         drr.ok = false;
       }
@@ -1040,30 +1265,40 @@ public class Request extends DavTesterBase {
     if (printRequest ||
             (manager.globals.getPrintDetailsOnFail() &&
                      (!drr.ok && !waitForSuccess))) {
-      var requesttxt = "\n-------BEGIN:REQUEST-------\n";
-      if (data != null) {
-        requesttxt += data + "\n";
+      final String bodyText;
+      if ((body != null) && data.isRawFile()) {
+        // Streamed from disk and may be large - do not read it in
+        bodyText = format("[file %s, %d bytes]",
+                          data.rawFilePath(), body.getContentLength());
+      } else {
+        bodyText = entityText(body);
       }
-      requesttxt += "--------END:REQUEST--------\n";
-      manager.protocol(requesttxt);
+      final var requesttxt = new StringBuilder(
+              64 + ((bodyText == null) ? 0 : bodyText.length()));
+      requesttxt.append("\n-------BEGIN:REQUEST-------\n");
+      if (bodyText != null) {
+        requesttxt.append(bodyText).append("\n");
+      }
+      requesttxt.append("--------END:REQUEST--------\n");
+      manager.protocol(requesttxt.toString());
     }
 
     if (printResponse ||
             (manager.globals.getPrintDetailsOnFail() &&
                      (!drr.ok && (!waitForSuccess)))) {
-      var responsetxt = "\n-------BEGIN:RESPONSE-------\n" +
-              format("%s %s %s\n",
-                     drr.protocolVersion,
-                     drr.status, drr.reason);
-      if (drr.responseData != null) {
-//              String.valueOf(drr.response.message) +
-        responsetxt +=
-                drr.responseData;
+      final var respData = drr.responseData;
+      final var responsetxt = new StringBuilder(
+              128 + ((respData == null) ? 0 : respData.length()));
+      responsetxt.append("\n-------BEGIN:RESPONSE-------\n")
+                 .append(format("%s %s %s\n",
+                                drr.protocolVersion,
+                                drr.status, drr.reason));
+      if (respData != null) {
+        responsetxt.append(respData);
       }
 
-      responsetxt +=
-              "\n--------END:RESPONSE--------\n";
-      manager.protocol(responsetxt);
+      responsetxt.append("\n--------END:RESPONSE--------\n");
+      manager.protocol(responsetxt.toString());
     }
 
     if (etags != null && (method.equals("GET"))) {
@@ -1072,6 +1307,15 @@ public class Request extends DavTesterBase {
       }
     }
 
+    final var grabStart = phaseStart(Phase.grab);
+    grabValues(drr);
+    phaseEnd(grabStart);
+
+    return drr;
+  }
+
+  /* Extract values from the response into the extra substitutions */
+  private void grabValues(final DoRequestResult drr) {
     if (graburi != null) {
       manager.serverInfo.addextrasubs(
               new KeyVals(graburi,
@@ -1089,7 +1333,7 @@ public class Request extends DavTesterBase {
         if (!msr.ok) {
           drr.ok = false;
           drr.append(msr.message);
-          return drr;
+          return;
         }
 
         ctr = msr.val.responses.size();
@@ -1228,8 +1472,60 @@ public class Request extends DavTesterBase {
         }
       }
     }
+  }
 
-    return drr;
+  private void recordExchange(final HttpRequestBase meth,
+                              final HttpEntity body,
+                              final CloseableHttpResponse resp,
+                              final String responseData) {
+    final var entry = new ExchangeArchive.Entry();
+    final var uri = meth.getURI();
+
+    entry.method = meth.getMethod();
+    if (uri.getRawQuery() == null) {
+      entry.uri = uri.getRawPath();
+    } else {
+      entry.uri = uri.getRawPath() + "?" + uri.getRawQuery();
+    }
+
+    for (final var hdr: meth.getAllHeaders()) {
+      entry.requestHeaders.add(new String[]{hdr.getName(),
+                                            hdr.getValue()});
+    }
+    entry.requestBody = entityText(body);
+
+    entry.status = resp.getStatusLine().getStatusCode();
+    entry.reason = resp.getStatusLine().getReasonPhrase();
+    for (final var hdr: resp.getAllHeaders()) {
+      entry.responseHeaders.add(new String[]{hdr.getName(),
+                                             hdr.getValue()});
+    }
+    entry.responseBody = responseData;
+
+    manager.exchange(entry);
+  }
+
+  private void sent(final long bytes,
+                    final RequestStats stats) {
+    manager.metrics.sent(bytes);
+
+    if (stats != null) {
+      stats.bytesSent += bytes;
+    }
+  }
+
+  private PhaseTimes.Span phaseStart(final Phase phase) {
+    if (phases == null) {
+      return null;
+    }
+
+    return phases.start(phase);
+  }
+
+  private static void phaseEnd(final PhaseTimes.Span span) {
+    if (span != null) {
+      span.end();
+    }
   }
 
   private int waitCount(final String val) {
@@ -1244,23 +1540,53 @@ public class Request extends DavTesterBase {
     }
   }
 
-  private CloseableHttpResponse execute(final HttpRequestBase meth) {
-    final CloseableHttpClient cl;
+  /* Host from the serverinfo pool - null to use host and port */
+  private HostPool.Member poolMember() {
+    if (!StringUtils.isEmpty(afunix)) {
+      return null;
+    }
 
-    if (auth) {
-      cl = manager.getHttpClient(getUser(),
-                            getPswd());
-    } else {
-      cl = manager.getUnauthHttpClient();
+    return manager.serverInfo.hosts.pick();
+  }
+
+  /* Execute and record the connect time as everything other than
+     the send and ttfb recorded by the request executor.
+   */
+  private CloseableHttpResponse timedExecute(final HttpRequestBase meth) {
+    final var hasCert = !StringUtils.isEmpty(cert);
+
+    if ((phases == null) && !hasCert) {
+      return execute(meth, null);
+    }
+
+    final var context = HttpClientContext.create();
+    if (hasCert) {
+      context.setAttribute(HttpEngine.certAttr, cert);
+    }
+
+    if (phases == null) {
+      return execute(meth, context);
     }
 
+    context.setAttribute(TimedRequestExecutor.phasesAttr, phases);
+    context.setAttribute(TimedRequestExecutor.statsAttr, requestStats);
+
+    final var span = phases.start(Phase.connect);
     try {
-      return cl.execute(meth);
-    } catch (final IOException e) {
-      return throwException(e);
+      return execute(meth, context);
+    } finally {
+      span.end();
     }
   }
 
+  private CloseableHttpResponse execute(final HttpRequestBase meth,
+                                        final HttpClientContext context) {
+    return manager.getHttpEngine(afunix).execute(meth,
+                                                 getUser(),
+                                                 getPswd(),
+                                                 auth, context);
+  }
+
   public DoRequestResult doGet(final UriIdPw uip,
                                final String label) {
     final var req = uip.makeRequest(this, "GET");
@@ -1498,6 +1824,7 @@ public class Request extends DavTesterBase {
     final var hrefs = new ArrayList<String>();
 
     for (var ignore = 0; ignore < manager.serverInfo.waitcount; ignore++) {
+      manager.metrics.waitPoll("waitcount");
       final var req = uip.makeRequest(this, "PROPFIND", "1");
 
       req.setDataVal("<?xml version=\"1.0\" encoding=\"utf-8\" ?>" +
@@ -1584,6 +1911,7 @@ public class Request extends DavTesterBase {
                                final String etag,
                                final String label) {
     for (var ignore = 0; ignore < manager.serverInfo.waitcount; ignore++) {
+      manager.metrics.waitPoll("waitchanged");
       final var req = uip.makeRequest(this, "HEAD");
 
       final var reqres = req.run(false, false, false,
@@ -1928,6 +2256,7 @@ public class Request extends DavTesterBase {
 
   private Result<MultiStatusResponse> getMultiStatusResponse(
           final String data) {
+    final var parseStart = phaseStart(Phase.parse);
     try {
       return new Result<>(multiStatusResponse(data));
     } catch (final Throwable t) {
@@ -1936,6 +2265,8 @@ public class Request extends DavTesterBase {
                                         "Message was %s\n" +
                                         "Data was %s",
                                 t.getMessage(), data));
+    } finally {
+      phaseEnd(parseStart);
     }
   }
 }
@@ -0,0 +1,462 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Manager;
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.RequestStats;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static org.bedework.davtester.Utils.throwException;
+
+/** Keeps a slow server from stalling the run. A request which takes
+ * longer than its request timeout is aborted and fails.
+ *
+ * <p>If hedging is enabled, a GET, PROPFIND or REPORT which has not
+ * responded by the chosen percentile of the latency seen so far for
+ * that method is sent again and the first response is used. The
+ * other is aborted. Nothing is hedged until there have been enough
+ * requests for the percentile to mean something.
+ *
+ * <p>Each copy of a hedged request records its phases separately and
+ * only those of the copy which responded are kept.
+ */
+public class RequestGuard {
+  /* Safe to send twice */
+  private static final Set<String> hedgeable =
+          Set.of("GET", "PROPFIND", "REPORT");
+
+  /* Requests with a method before its latency is used */
+  private static final int minSamples = 20;
+
+  private final Manager manager;
+  private final Timeouts timeouts;
+  private final boolean hedge;
+  private final double quantile;
+
+  private ScheduledExecutorService timer;
+
+  /* Runs requests for blocking engines when hedging */
+  private ExecutorService attempts;
+
+  /**
+   * @param manager for metrics and the globals
+   * @param timeouts for the server
+   */
+  public RequestGuard(final Manager manager,
+                      final Timeouts timeouts) {
+    this.manager = manager;
+    this.timeouts = timeouts;
+    hedge = manager.globals.getHedgeRequests();
+    quantile = Math.min(Math.max(manager.globals.getHedgePercentile(),
+                                 1), 99) / 100.0;
+  }
+
+  /** Send the request and wait for the response.
+   *
+   * @param engine to send it
+   * @param meth the request
+   * @param user for authentication - null for the server default
+   * @param pswd for authentication - null for the server default
+   * @param auth false for an unauthenticated request
+   * @param context may carry the PhaseTimes to update - may be null
+   * @return the response
+   */
+  public CloseableHttpResponse execute(final HttpEngine engine,
+                                       final HttpRequestBase meth,
+                                       final String user,
+                                       final String pswd,
+                                       final boolean auth,
+                                       final HttpClientContext context) {
+    if (meth.isAborted()) {
+      // Resent - e.g. getwait after a hedge responded first
+      meth.reset();
+    }
+
+    final var method = meth.getMethod();
+    final var limit = timeouts.request(method);
+    final var hedgeAfter = hedgeDelay(meth);
+
+    if ((hedgeAfter < 0) || ((limit > 0) && (hedgeAfter >= limit))) {
+      return single(engine, meth, user, pswd, auth, context, limit);
+    }
+
+    return hedged(engine, meth, user, pswd, auth, context,
+                  limit, hedgeAfter);
+  }
+
+  /** Stop the timer and any threads.
+   */
+  public synchronized void close() {
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+
+    if (attempts != null) {
+      attempts.shutdownNow();
+      attempts = null;
+    }
+  }
+
+  private CloseableHttpResponse single(final HttpEngine engine,
+                                       final HttpRequestBase meth,
+                                       final String user,
+                                       final String pswd,
+                                       final boolean auth,
+                                       final HttpClientContext context,
+                                       final int limit) {
+    if (limit <= 0) {
+      try {
+        return engine.send(meth, user, pswd, auth, context).join();
+      } catch (final CompletionException ce) {
+        return failed(meth, context, ce);
+      }
+    }
+
+    // Either the response or the timer - whichever is first
+    final var settled = new AtomicBoolean();
+    final var abort = timer().schedule(() -> {
+      if (settled.compareAndSet(false, true)) {
+        meth.abort();
+      }
+    }, limit, TimeUnit.MILLISECONDS);
+
+    // A blocking engine returns once the response or abort arrives
+    final var resp = engine.send(meth, user, pswd, auth, context);
+
+    try {
+      final var res = resp.get(limit, TimeUnit.MILLISECONDS);
+
+      if (!settled.compareAndSet(false, true)) {
+        // Aborted as it arrived
+        res.close();
+        return timedOut(meth, context, limit);
+      }
+
+      return res;
+    } catch (final TimeoutException te) {
+      settled.set(true);
+      meth.abort();
+      resp.cancel(true);
+      return timedOut(meth, context, limit);
+    } catch (final ExecutionException ee) {
+      if (settled.get() && meth.isAborted()) {
+        return timedOut(meth, context, limit);
+      }
+
+      return failed(meth, context, ee);
+    } catch (final Throwable t) {
+      return throwException(t);
+    } finally {
+      abort.cancel(false);
+    }
+  }
+
+  private CloseableHttpResponse hedged(final HttpEngine engine,
+                                       final HttpRequestBase meth,
+                                       final String user,
+                                       final String pswd,
+                                       final boolean auth,
+                                       final HttpClientContext context,
+                                       final int limit,
+                                       final long hedgeAfter) {
+    final var start = System.currentTimeMillis();
+
+    final var primaryContext = attemptContext(context);
+    final var primary = attempt(engine, meth, user, pswd, auth,
+                                primaryContext);
+
+    try {
+      final var res = primary.get(hedgeAfter, TimeUnit.MILLISECONDS);
+      keep(context, primaryContext);
+      return res;
+    } catch (final TimeoutException te) {
+      // Slow - send a copy
+    } catch (final ExecutionException ee) {
+      return failed(meth, context, ee);
+    } catch (final Throwable t) {
+      return throwException(t);
+    }
+
+    final var copy = copy(meth);
+    final var copyContext = attemptContext(context);
+    final var second = attempt(engine, copy, user, pswd, auth,
+                               copyContext);
+
+    final var first = new CompletableFuture<CloseableHttpResponse>();
+    final var failures = new AtomicInteger();
+
+    for (final var f: List.of(primary, second)) {
+      f.whenComplete((res, t) -> {
+        if (t != null) {
+          if (failures.incrementAndGet() == 2) {
+            first.completeExceptionally(t);
+          }
+        } else if (!first.complete(res)) {
+          // Too late
+          close(res);
+        }
+      });
+    }
+
+    final CloseableHttpResponse res;
+    try {
+      if (limit > 0) {
+        final var remaining = Math.max(
+                limit - (System.currentTimeMillis() - start), 1);
+        res = first.get(remaining, TimeUnit.MILLISECONDS);
+      } else {
+        res = first.get();
+      }
+    } catch (final TimeoutException te) {
+      first.completeExceptionally(te);
+      meth.abort();
+      copy.abort();
+      return timedOut(meth, context, limit);
+    } catch (final ExecutionException ee) {
+      return failed(meth, context, ee);
+    } catch (final Throwable t) {
+      return throwException(t);
+    }
+
+    final var won = second.isDone() &&
+            !second.isCompletedExceptionally() &&
+            (second.join() == res);
+
+    if (won) {
+      meth.abort();
+      keep(context, copyContext);
+    } else {
+      copy.abort();
+      keep(context, primaryContext);
+    }
+
+    manager.metrics.hedged(won);
+
+    final var stats = stats(context);
+    if (stats != null) {
+      stats.hedged++;
+      if (won) {
+        stats.hedgeWins++;
+      }
+    }
+
+    return res;
+  }
+
+  /* Not clone - that shares the abort state with the original */
+  private static HttpRequestBase copy(final HttpRequestBase meth) {
+    final var method = meth.getMethod();
+    final HttpRequestBase res;
+
+    if (meth instanceof HttpEntityEnclosingRequest) {
+      final var ent = new HttpEntityEnclosingRequestBase() {
+        @Override
+        public String getMethod() {
+          return method;
+        }
+      };
+
+      // Repeatable - see hedgeDelay
+      ent.setEntity(((HttpEntityEnclosingRequest)meth).getEntity());
+      res = ent;
+    } else {
+      res = new HttpRequestBase() {
+        @Override
+        public String getMethod() {
+          return method;
+        }
+      };
+    }
+
+    res.setURI(meth.getURI());
+    res.setHeaders(meth.getAllHeaders());
+    res.setConfig(meth.getConfig());
+
+    return res;
+  }
+
+  /* ms to wait before hedging - -1 for no hedge */
+  private long hedgeDelay(final HttpRequestBase meth) {
+    if (!hedge || !hedgeable.contains(meth.getMethod())) {
+      return -1;
+    }
+
+    if (meth instanceof HttpEntityEnclosingRequest) {
+      final var ent = ((HttpEntityEnclosingRequest)meth).getEntity();
+      if ((ent != null) && !ent.isRepeatable()) {
+        return -1;
+      }
+    }
+
+    final var latency = manager.metrics.latency(meth.getMethod(),
+                                                quantile,
+                                                minSamples);
+    if (latency < 0) {
+      return -1;
+    }
+
+    return Math.max(latency, 1);
+  }
+
+  private CompletableFuture<CloseableHttpResponse> attempt(
+          final HttpEngine engine,
+          final HttpRequestBase meth,
+          final String user,
+          final String pswd,
+          final boolean auth,
+          final HttpClientContext context) {
+    if (!engine.blocking()) {
+      return engine.send(meth, user, pswd, auth, context);
+    }
+
+    return CompletableFuture.supplyAsync(
+            () -> engine.send(meth, user, pswd, auth, context).join(),
+            attempts());
+  }
+
+  /* Each copy of a hedged request gets its own phases and stats - the
+     copy which loses may still be running when the response is used.
+   */
+  private static HttpClientContext attemptContext(
+          final HttpClientContext context) {
+    final var res = HttpClientContext.create();
+    if (context == null) {
+      return res;
+    }
+
+    res.setAttribute(HttpEngine.certAttr,
+                     context.getAttribute(HttpEngine.certAttr));
+
+    if (context.getAttribute(TimedRequestExecutor.phasesAttr) != null) {
+      final var stats = new RequestStats();
+      res.setAttribute(TimedRequestExecutor.phasesAttr, stats.phases);
+      res.setAttribute(TimedRequestExecutor.statsAttr, stats);
+    }
+
+    return res;
+  }
+
+  /* Add what was recorded for the copy which responded */
+  private static void keep(final HttpClientContext context,
+                           final HttpClientContext attemptContext) {
+    final var stats = stats(context);
+    final var attemptStats = stats(attemptContext);
+    if ((stats == null) || (attemptStats == null)) {
+      return;
+    }
+
+    final var phases = (PhaseTimes)context.getAttribute(
+            TimedRequestExecutor.phasesAttr);
+    if (phases != null) {
+      phases.add(attemptStats.phases);
+    }
+
+    stats.tlsHandshakes += attemptStats.tlsHandshakes;
+    stats.tlsResumed += attemptStats.tlsResumed;
+  }
+
+  private static RequestStats stats(final HttpClientContext context) {
+    if (context == null) {
+      return null;
+    }
+
+    return (RequestStats)context.getAttribute(
+            TimedRequestExecutor.statsAttr);
+  }
+
+  private <T> T timedOut(final HttpRequestBase meth,
+                         final HttpClientContext context,
+                         final int limit) {
+    countTimeout(meth, context);
+
+    return throwException(format("Request timed out after %d ms: %s %s",
+                                 limit, meth.getMethod(),
+                                 meth.getURI()));
+  }
+
+  /* Rethrow the cause - counting connect and socket timeouts */
+  private <T> T failed(final HttpRequestBase meth,
+                       final HttpClientContext context,
+                       final Throwable t) {
+    var cause = t;
+    while (((cause instanceof ExecutionException) ||
+            (cause instanceof CompletionException)) &&
+            (cause.getCause() != null)) {
+      cause = cause.getCause();
+    }
+
+    if ((cause instanceof SocketTimeoutException) ||
+            (cause instanceof ConnectTimeoutException) ||
+            (cause instanceof HttpTimeoutException)) {
+      countTimeout(meth, context);
+    }
+
+    return throwException(cause);
+  }
+
+  private void countTimeout(final HttpRequestBase meth,
+                            final HttpClientContext context) {
+    manager.metrics.timedOut(meth.getMethod());
+
+    final var stats = stats(context);
+    if (stats != null) {
+      stats.timeouts++;
+    }
+  }
+
+  private static void close(final CloseableHttpResponse resp) {
+    try {
+      resp.close();
+    } catch (final Throwable ignored) {
+    }
+  }
+
+  private synchronized ScheduledExecutorService timer() {
+    if (timer == null) {
+      timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final var t = new Thread(r, "request-timer");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+
+    return timer;
+  }
+
+  private synchronized ExecutorService attempts() {
+    if (attempts == null) {
+      attempts = Executors.newCachedThreadPool(r -> {
+        final var t = new Thread(r, "request-attempt");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+
+    return attempts;
+  }
+}
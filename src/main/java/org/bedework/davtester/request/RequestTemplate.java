@@ -0,0 +1,321 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.Serverinfo;
+import org.bedework.davtester.Utils;
+
+import org.apache.http.Header;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.message.BasicHeader;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/** A request definition compiled once when the test is parsed rather
+ * than on every run. The method is split from its parameter, and uri
+ * and header values with no substitutions are kept as they are. Only
+ * values which refer to variables are bound when the request runs.
+ *
+ * <p>The target URI built for the last bound uri and the User-Agent
+ * for the last label are kept, so repeated runs of the same request
+ * skip the uri parsing and label encoding.
+ */
+class RequestTemplate {
+  /** Methods handled by the tester rather than sent as they are */
+  enum Special {
+    NONE,
+    DELETEALL,
+    DELAY,
+    GETNEW,
+    GETOTHER,
+    FINDNEW,
+    GETCONTAINS,
+    WAITCOUNT,
+    WAITDELETEALL,
+    GETCHANGED,
+    GETWAIT
+  }
+
+  /* A value and what it was built from */
+  private static class Cached<T> {
+    final String key;
+    final T val;
+
+    Cached(final String key,
+           final T val) {
+      this.key = key;
+      this.val = val;
+    }
+  }
+
+  /* A uri or header value - constant if it has no substitutions */
+  private static class Value {
+    final String source;
+    final boolean constant;
+
+    Value(final String source) {
+      this.source = source;
+      constant = (source == null) || !source.contains("$");
+    }
+
+    String bind(final Serverinfo si) {
+      if (constant) {
+        return source;
+      }
+
+      return si.extrasubs(source);
+    }
+  }
+
+  private static class HeaderValue {
+    final String name;
+    final Value value;
+
+    /* Null unless the value is constant */
+    final Header header;
+
+    HeaderValue(final Header hdr) {
+      name = hdr.getName();
+      value = new Value(hdr.getValue());
+
+      if (value.constant) {
+        header = new BasicHeader(name, value.source);
+      } else {
+        header = null;
+      }
+    }
+
+    Header bind(final Serverinfo si) {
+      if (header != null) {
+        return header;
+      }
+
+      return new BasicHeader(name, value.bind(si));
+    }
+  }
+
+  /* What this was compiled from */
+  private final String methodSource;
+  private final String ruriSource;
+  private final int headerCount;
+  private final String host;
+  private final int port;
+
+  private final String scheme;
+
+  /** The method name without its parameter */
+  final String name;
+
+  final Special special;
+
+  /** The http method sent - null for specials which send nothing
+   * themselves */
+  final String httpMethod;
+
+  /** The method parameter - e.g. a wait count - or null */
+  final String param;
+
+  private final Value uri;
+
+  /* Generated uris are never the same twice */
+  private final boolean uriGenerated;
+
+  private final List<HeaderValue> headers;
+
+  private volatile Cached<URI> lastTarget;
+  private volatile Cached<Header> lastUserAgent;
+
+  /**
+   * @param method as parsed - may have a parameter after a space
+   * @param ruri request uri before substitution
+   * @param headers from the test
+   * @param scheme for the target
+   * @param host for the target
+   * @param port for the target
+   */
+  RequestTemplate(final String method,
+                  final String ruri,
+                  final List<Header> headers,
+                  final String scheme,
+                  final String host,
+                  final int port) {
+    methodSource = method;
+    ruriSource = ruri;
+    headerCount = headers.size();
+    this.scheme = scheme;
+    this.host = host;
+    this.port = port;
+
+    String name = null;
+    String par = null;
+
+    if (method != null) {
+      final var split = method.split(" ");
+      name = split[0];
+      if (split.length > 1) {
+        par = split[1];
+      }
+    }
+
+    this.name = name;
+    param = par;
+    special = special(name);
+
+    switch (special) {
+      case NONE:
+        httpMethod = name;
+        break;
+
+      case GETNEW:
+      case GETOTHER:
+      case GETCONTAINS:
+      case GETCHANGED:
+      case GETWAIT:
+        httpMethod = "GET";
+        break;
+
+      default:
+        httpMethod = null;
+    }
+
+    uri = new Value(ruri);
+    uriGenerated = (ruri != null) &&
+            (ruri.contains("**") || ruri.contains("##"));
+
+    this.headers = new ArrayList<>(headers.size());
+    for (final var hdr: headers) {
+      this.headers.add(new HeaderValue(hdr));
+    }
+  }
+
+  /**
+   * @return true if this was compiled from these values
+   */
+  boolean matches(final String method,
+                  final String ruri,
+                  final List<Header> headers,
+                  final String host,
+                  final int port) {
+    // Identity is enough - the fields are replaced, not modified
+    return (methodSource == method) &&
+            (ruriSource == ruri) &&
+            (headerCount == headers.size()) &&
+            (this.host == host) &&
+            (this.port == port);
+  }
+
+  /**
+   * @param si for substitutions
+   * @param count the repeat count for "##"
+   * @return the request uri for this run
+   */
+  String bindUri(final Serverinfo si,
+                 final int count) {
+    var res = uri.bind(si);
+    if (!uriGenerated || (res == null)) {
+      return res;
+    }
+
+    if (res.contains("**")) {
+      if (!res.contains("?") || (res.indexOf("?") > res.indexOf("**"))) {
+        res = res.replace("**", UUID.randomUUID().toString());
+      }
+    } else if (res.contains("##")) {
+      if (!res.contains("?") || res.indexOf("?") > res.indexOf("##")) {
+        res = res.replace("##", String.valueOf(count));
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @param si for substitutions
+   * @return headers for this run - the list may be added to
+   */
+  List<Header> bindHeaders(final Serverinfo si) {
+    final var res = new ArrayList<Header>(headers.size() + 1);
+
+    for (final var hdr: headers) {
+      res.add(hdr.bind(si));
+    }
+
+    return res;
+  }
+
+  /**
+   * @param ruri bound request uri
+   * @param member host from the pool - null for the server
+   * @return absolute uri for the target server
+   * @throws URISyntaxException for a bad uri
+   */
+  URI target(final String ruri,
+             final HostPool.Member member) throws URISyntaxException {
+    final String targetHost;
+    final int targetPort;
+    final String key;
+
+    if (member == null) {
+      targetHost = host;
+      targetPort = port;
+      key = ruri;
+    } else {
+      targetHost = member.host;
+      targetPort = member.port(port);
+      key = member + " " + ruri;
+    }
+
+    final var last = lastTarget;
+    if ((last != null) && last.key.equals(key)) {
+      return last.val;
+    }
+
+    final var res = new URIBuilder(new URI(ruri))
+            .setScheme(scheme)
+            .setHost(targetHost)
+            .setPort(targetPort)
+            .build();
+
+    lastTarget = new Cached<>(key, res);
+
+    return res;
+  }
+
+  /**
+   * @param label of the test
+   * @return User-Agent header naming the test
+   */
+  Header userAgent(final String label) {
+    final var last = lastUserAgent;
+    if ((last != null) && last.key.equals(label)) {
+      return last.val;
+    }
+
+    final var res = new BasicHeader("User-Agent",
+                                    "Cal-Tester: " +
+                                            Utils.encodeUtf8(label));
+
+    lastUserAgent = new Cached<>(label, res);
+
+    return res;
+  }
+
+  private static Special special(final String name) {
+    if (name == null) {
+      return Special.NONE;
+    }
+
+    for (final var sp: Special.values()) {
+      if (sp.name().equals(name)) {
+        return sp;
+      }
+    }
+
+    return Special.NONE;
+  }
+}
@@ -0,0 +1,71 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.davtester.PhaseTimes;
+import org.bedework.davtester.PhaseTimes.Phase;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+
+/** Records the time spent sending each request and waiting for the
+ * response headers in the PhaseTimes found in the context, if any.
+ */
+public class TimedRequestExecutor extends HttpRequestExecutor {
+  /** Context attribute holding the PhaseTimes to update */
+  public static final String phasesAttr = "davtester.phases";
+
+  /** Context attribute holding the RequestStats to update */
+  public static final String statsAttr = "davtester.stats";
+
+  @Override
+  protected HttpResponse doSendRequest(final HttpRequest request,
+                                       final HttpClientConnection conn,
+                                       final HttpContext context)
+          throws IOException, HttpException {
+    final var phases = phases(context);
+    if (phases == null) {
+      return super.doSendRequest(request, conn, context);
+    }
+
+    final var span = phases.start(Phase.send);
+    try {
+      return super.doSendRequest(request, conn, context);
+    } finally {
+      span.end();
+    }
+  }
+
+  @Override
+  protected HttpResponse doReceiveResponse(final HttpRequest request,
+                                           final HttpClientConnection conn,
+                                           final HttpContext context)
+          throws HttpException, IOException {
+    final var phases = phases(context);
+    if (phases == null) {
+      return super.doReceiveResponse(request, conn, context);
+    }
+
+    final var span = phases.start(Phase.ttfb);
+    try {
+      return super.doReceiveResponse(request, conn, context);
+    } finally {
+      span.end();
+    }
+  }
+
+  private static PhaseTimes phases(final HttpContext context) {
+    if (context == null) {
+      return null;
+    }
+
+    return (PhaseTimes)context.getAttribute(phasesAttr);
+  }
+}
@@ -0,0 +1,99 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.request;
+
+import org.bedework.util.misc.ToString;
+
+import org.apache.http.client.config.RequestConfig;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The timeouts for a server from the serverinfo timeouts element.
+ * All are in milliseconds with 0 meaning no limit - the default.
+ *
+ * <p>connect and socket limit establishing a connection and each
+ * wait for data on it. request limits the whole exchange up to the
+ * response headers and may be set for each method, so a slow REPORT
+ * can be allowed longer than a GET.
+ */
+public class Timeouts {
+  /** Establishing a connection - includes any TLS handshake */
+  public int connect;
+
+  /** Max time between packets once connected */
+  public int socket;
+
+  /** Default for the whole request */
+  public int request;
+
+  /* Overrides of request by upper case method name */
+  private final Map<String, Integer> byMethod = new TreeMap<>();
+
+  /**
+   * @param method http method
+   * @param millis timeout for requests with that method
+   */
+  public void setRequest(final String method,
+                         final int millis) {
+    byMethod.put(method.toUpperCase(Locale.ROOT), millis);
+  }
+
+  /**
+   * @param method http method - may be null
+   * @return timeout in ms for a request with that method - 0 for none
+   */
+  public int request(final String method) {
+    if (method != null) {
+      final var res = byMethod.get(method.toUpperCase(Locale.ROOT));
+      if (res != null) {
+        return res;
+      }
+    }
+
+    return request;
+  }
+
+  /**
+   * @return true if no timeout is set
+   */
+  public boolean isEmpty() {
+    return (connect == 0) && (socket == 0) && (request == 0) &&
+            byMethod.isEmpty();
+  }
+
+  /**
+   * @return default config for the Apache clients
+   */
+  public RequestConfig requestConfig() {
+    final var res = RequestConfig.custom();
+
+    if (connect > 0) {
+      // Waiting for a pooled connection counts as connecting
+      res.setConnectTimeout(connect);
+      res.setConnectionRequestTimeout(connect);
+    }
+
+    if (socket > 0) {
+      res.setSocketTimeout(socket);
+    }
+
+    return res.build();
+  }
+
+  @Override
+  public String toString() {
+    final var ts = new ToString(this);
+
+    ts.append("connect", connect);
+    ts.append("socket", socket);
+    ts.append("request", request);
+    if (!byMethod.isEmpty()) {
+      ts.append("byMethod", byMethod.toString());
+    }
+
+    return ts.toString();
+  }
+}
@@ -16,6 +16,7 @@
 package org.bedework.davtester.request;
 
 import org.bedework.davtester.DavTesterBase;
+import org.bedework.davtester.FixtureCache;
 import org.bedework.davtester.KeyVals;
 import org.bedework.davtester.Manager;
 import org.bedework.davtester.XmlDefs;
@@ -39,10 +40,12 @@ import org.bedework.davtester.verifiers.XmlElementMatch;
 import org.apache.http.Header;
 import org.w3c.dom.Element;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import static org.bedework.davtester.Utils.throwException;
 import static org.bedework.davtester.XmlUtils.children;
@@ -58,24 +61,28 @@ import static org.bedework.util.xml.XmlUtil.nodeMatches;
  file also and is dynamically loaded to do the verification.
  */
 public class Verify extends DavTesterBase {
-  private static final Map<String, Verifier> verifiers = new HashMap<>();
+  /* Verifiers hold state for the call - tests may be verified at the
+     same time so each call gets its own.
+   */
+  private static final Map<String, Supplier<Verifier>> verifiers =
+          new HashMap<>();
 
   static {
-    addVerifier("addressDataMatch", new AddressDataMatch());
-    addVerifier("aclItems", new AclItems());
-    addVerifier("calendarDataMatch", new IcalendarDataMatch());
-    addVerifier("dataMatch", new DataMatch());
-    addVerifier("dataString", new DataString());
-    addVerifier("freeBusy", new FreeBusy());
-    addVerifier("header", new org.bedework.davtester.verifiers.Header());
-    addVerifier("multistatusItems", new MultistatusItems());
-    addVerifier("postFreeBusy", new PostFreeBusy());
-    addVerifier("prepostcondition", new Prepostcondition());
-    addVerifier("propfindItems", new PropfindItems());
-    addVerifier("propfindValues", new PropfindValues());
-    addVerifier("statusCode", new StatusCode());
-    addVerifier("xmlDataMatch", new XmlDataMatch());
-    addVerifier("xmlElementMatch", new XmlElementMatch());
+    addVerifier("addressDataMatch", AddressDataMatch::new);
+    addVerifier("aclItems", AclItems::new);
+    addVerifier("calendarDataMatch", IcalendarDataMatch::new);
+    addVerifier("dataMatch", DataMatch::new);
+    addVerifier("dataString", DataString::new);
+    addVerifier("freeBusy", FreeBusy::new);
+    addVerifier("header", org.bedework.davtester.verifiers.Header::new);
+    addVerifier("multistatusItems", MultistatusItems::new);
+    addVerifier("postFreeBusy", PostFreeBusy::new);
+    addVerifier("prepostcondition", Prepostcondition::new);
+    addVerifier("propfindItems", PropfindItems::new);
+    addVerifier("propfindValues", PropfindValues::new);
+    addVerifier("statusCode", StatusCode::new);
+    addVerifier("xmlDataMatch", XmlDataMatch::new);
+    addVerifier("xmlElementMatch", XmlElementMatch::new);
   }
 
   private String callback;
@@ -83,11 +90,6 @@ public class Verify extends DavTesterBase {
 
   public Verify(final Manager manager) {
     super(manager);
-
-    // Initialise the verifiers
-    for (final var verifier: verifiers.values()) {
-      verifier.init(manager);
-    }
   }
 
   public VerifyResult doVerify(final String ruri,
@@ -107,18 +109,55 @@ public class Verify extends DavTesterBase {
       }
     }
 
-    final var verifier = verifiers.get(callback);
+    final var factory = verifiers.get(callback);
 
-    if (verifier == null) {
+    if (factory == null) {
       return throwException("Unknown verifier: " + callback);
     }
 
+    final var verifier = factory.get();
+    verifier.init(manager);
+
     // Always clone the args as this verifier may be called multiple times
     final var newargs = new KeyVals(args);
 
     manager.currentTestfile.applyDefaultFilters(callback, newargs);
 
-    return verifier.doVerify(ruri, responseHeaders, status, respdata, newargs);
+    final var start = System.currentTimeMillis();
+    try {
+      return verifier.doVerify(ruri, responseHeaders, status, respdata,
+                               newargs);
+    } finally {
+      manager.metrics.verified(callback,
+                               System.currentTimeMillis() - start);
+    }
+  }
+
+  /** For the scheduler. The args are substituted again when verifying
+   * and an expected data file is substituted when read.
+   *
+   * @return variables the args and any data file refer to
+   */
+  public List<String> variables() {
+    final var res = new ArrayList<String>();
+
+    for (final var name: args.keySet()) {
+      for (final var value: args.getStrings(name)) {
+        res.addAll(FixtureCache.findVars(value));
+      }
+    }
+
+    final var filepath = args.getOnlyString("filepath");
+    if (filepath != null) {
+      final var path = manager.normResPath(filepath).toString();
+
+      // A missing file fails when verifying
+      if (new File(path).exists()) {
+        res.addAll(manager.fixtures.variables(path));
+      }
+    }
+
+    return res;
   }
 
   @Override
@@ -164,7 +203,8 @@ public class Verify extends DavTesterBase {
     }
   }
 
-  private static void addVerifier(final String name, final Verifier verifier) {
+  private static void addVerifier(final String name,
+                                  final Supplier<Verifier> verifier) {
     verifiers.put(name, verifier);
   }
 
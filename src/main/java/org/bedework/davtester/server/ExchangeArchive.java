@@ -0,0 +1,227 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A recording of http exchanges: a gzipped file with one JSON object
+ * per exchange per line.
+ */
+public class ExchangeArchive {
+  private static final JsonFactory factory = new JsonFactory();
+
+  /** One request and its response.
+   */
+  public static class Entry {
+    public String method;
+
+    /* Path and query as sent */
+    public String uri;
+
+    /* Name and value pairs */
+    public List<String[]> requestHeaders = new ArrayList<>();
+    public String requestBody;
+
+    public int status;
+    public String reason;
+    public List<String[]> responseHeaders = new ArrayList<>();
+    public String responseBody;
+
+    /**
+     * @return fingerprint of the request
+     */
+    public String fingerprint() {
+      return ExchangeArchive.fingerprint(method, uri, requestBody);
+    }
+  }
+
+  /**
+   * @param method http method
+   * @param uri path and query
+   * @param body request body or null
+   * @return string identifying the request
+   */
+  public static String fingerprint(final String method,
+                                   final String uri,
+                                   final String body) {
+    final var sb = new StringBuilder(method).append(' ').append(uri);
+
+    if ((body != null) && !body.isEmpty()) {
+      try {
+        final var md = MessageDigest.getInstance("SHA-256");
+        sb.append(' ');
+        for (final var b: md.digest(body.getBytes(StandardCharsets.UTF_8))) {
+          sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+            .append(Character.forDigit(b & 0xf, 16));
+        }
+      } catch (final Throwable t) {
+        throw new RuntimeException(t);
+      }
+    }
+
+    return sb.toString();
+  }
+
+  /** Appends entries to an archive.
+   */
+  public static class Writer implements Closeable {
+    private final BufferedWriter out;
+
+    public Writer(final Path path) throws IOException {
+      out = new BufferedWriter(new OutputStreamWriter(
+              new GZIPOutputStream(Files.newOutputStream(path)),
+              StandardCharsets.UTF_8));
+    }
+
+    public synchronized void write(final Entry entry) throws IOException {
+      final JsonGenerator gen = factory.createGenerator(out);
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+      gen.writeStartObject();
+      gen.writeStringField("method", entry.method);
+      gen.writeStringField("uri", entry.uri);
+      headers(gen, "requestHeaders", entry.requestHeaders);
+      if (entry.requestBody != null) {
+        gen.writeStringField("requestBody", entry.requestBody);
+      }
+      gen.writeNumberField("status", entry.status);
+      if (entry.reason != null) {
+        gen.writeStringField("reason", entry.reason);
+      }
+      headers(gen, "responseHeaders", entry.responseHeaders);
+      if (entry.responseBody != null) {
+        gen.writeStringField("responseBody", entry.responseBody);
+      }
+      gen.writeEndObject();
+      gen.close();
+
+      out.write('\n');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      out.close();
+    }
+
+    private static void headers(final JsonGenerator gen,
+                                final String name,
+                                final List<String[]> headers)
+            throws IOException {
+      gen.writeArrayFieldStart(name);
+      for (final var hdr: headers) {
+        gen.writeStartArray();
+        gen.writeString(hdr[0]);
+        gen.writeString(hdr[1]);
+        gen.writeEndArray();
+      }
+      gen.writeEndArray();
+    }
+  }
+
+  /**
+   * @param path of archive
+   * @return entries in the order recorded
+   * @throws IOException on error
+   */
+  public static List<Entry> read(final Path path) throws IOException {
+    final var res = new ArrayList<Entry>();
+
+    try (final var rdr = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(path)),
+            StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = rdr.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+
+        try (final var parser = factory.createParser(line)) {
+          res.add(entry(parser));
+        }
+      }
+    }
+
+    return res;
+  }
+
+  private static Entry entry(final JsonParser parser) throws IOException {
+    final var entry = new Entry();
+
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Expected object");
+    }
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final var name = parser.getCurrentName();
+      parser.nextToken();
+
+      switch (name) {
+        case "method":
+          entry.method = parser.getText();
+          break;
+        case "uri":
+          entry.uri = parser.getText();
+          break;
+        case "requestHeaders":
+          entry.requestHeaders = headers(parser);
+          break;
+        case "requestBody":
+          entry.requestBody = parser.getText();
+          break;
+        case "status":
+          entry.status = parser.getIntValue();
+          break;
+        case "reason":
+          entry.reason = parser.getText();
+          break;
+        case "responseHeaders":
+          entry.responseHeaders = headers(parser);
+          break;
+        case "responseBody":
+          entry.responseBody = parser.getText();
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    return entry;
+  }
+
+  private static List<String[]> headers(final JsonParser parser)
+          throws IOException {
+    final var res = new ArrayList<String[]>();
+
+    // Positioned on START_ARRAY
+    while (parser.nextToken() == JsonToken.START_ARRAY) {
+      parser.nextToken();
+      final var name = parser.getText();
+      parser.nextToken();
+      final var value = parser.getText();
+      parser.nextToken(); // END_ARRAY
+
+      res.add(new String[]{name, value});
+    }
+
+    return res;
+  }
+}
@@ -0,0 +1,379 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.server;
+
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A minimal in-memory DAV server used to measure the overhead of the
+ * tester itself. It is not a CalDAV implementation - it stores what
+ * is PUT and answers with plausible responses:
+ * <ul>
+ *   <li>PUT, GET, HEAD and DELETE act on the stored resources</li>
+ *   <li>MKCOL and MKCALENDAR create collections</li>
+ *   <li>PROPFIND and REPORT return a multistatus with a response for
+ *   the target and, unless Depth is 0, each stored child, plus a
+ *   configured number of synthetic responses</li>
+ *   <li>Anything else gets a 200 with an empty body</li>
+ * </ul>
+ *
+ * <p>Every response may be delayed by a fixed latency to simulate
+ * a server. Larger responses are gzipped if the client accepts that
+ * and gzipped request bodies are decoded.
+ */
+public class MockDavServer implements Logged {
+  private static class Resource {
+    final String body;
+    final String contentType;
+    final String etag;
+
+    Resource(final String body,
+             final String contentType,
+             final String etag) {
+      this.body = body;
+      this.contentType = contentType;
+      this.etag = etag;
+    }
+  }
+
+  private final Map<String, Resource> resources =
+          new ConcurrentHashMap<>();
+  private final Set<String> collections = ConcurrentHashMap.newKeySet();
+  private final AtomicLong etags = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+
+  private final int latency;
+  private final int syntheticResponses;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * @param port to listen on - 0 for any free port
+   * @param latency millis added to each response
+   * @param syntheticResponses extra responses in each multistatus
+   * @throws IOException on error
+   */
+  public MockDavServer(final int port,
+                       final int latency,
+                       final int syntheticResponses) throws IOException {
+    this.latency = latency;
+    this.syntheticResponses = syntheticResponses;
+
+    server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+            0);
+    server.createContext("/", this::handle);
+
+    executor = Executors.newCachedThreadPool(r -> {
+      final var t = new Thread(r, "mock-dav");
+      t.setDaemon(true);
+      return t;
+    });
+    server.setExecutor(executor);
+  }
+
+  public void start() {
+    server.start();
+    info("Mock DAV server listening on port " + getPort());
+  }
+
+  /**
+   * @return loopback address we are listening on
+   */
+  public String getHost() {
+    return server.getAddress().getAddress().getHostAddress();
+  }
+
+  /**
+   * @return port we are listening on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+    info("Mock DAV server handled " + requests.get() + " requests");
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+
+    try {
+      final String body;
+      try (final var in = requestBody(exchange)) {
+        body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+
+      if (latency > 0) {
+        Thread.sleep(latency);
+      }
+
+      final var path = exchange.getRequestURI().getPath();
+
+      switch (exchange.getRequestMethod()) {
+        case "PUT":
+          put(exchange, path, body);
+          break;
+        case "GET":
+          get(exchange, path, true);
+          break;
+        case "HEAD":
+          get(exchange, path, false);
+          break;
+        case "DELETE":
+          delete(exchange, path);
+          break;
+        case "MKCOL":
+        case "MKCALENDAR":
+          collections.add(collectionPath(path));
+          send(exchange, 201, null, null);
+          break;
+        case "PROPFIND":
+          multistatus(exchange, path, false);
+          break;
+        case "REPORT":
+          multistatus(exchange, path, true);
+          break;
+        case "OPTIONS":
+          exchange.getResponseHeaders()
+                  .add("DAV", "1, 2, access-control, calendar-access");
+          send(exchange, 200, null, null);
+          break;
+        default:
+          send(exchange, 200, null, null);
+      }
+    } catch (final InterruptedException ie) {
+      send(exchange, 503, null, null);
+    } catch (final Throwable t) {
+      error(t);
+      send(exchange, 500, null, null);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void put(final HttpExchange exchange,
+                   final String path,
+                   final String body) throws IOException {
+    var contentType =
+            exchange.getRequestHeaders().getFirst("Content-Type");
+    if (contentType == null) {
+      contentType = "application/octet-stream";
+    }
+
+    final var etag = "\"" + etags.incrementAndGet() + "\"";
+    final var old = resources.put(path,
+                                  new Resource(body, contentType, etag));
+
+    exchange.getResponseHeaders().add("ETag", etag);
+    send(exchange, (old == null) ? 201 : 204, null, null);
+  }
+
+  private void get(final HttpExchange exchange,
+                   final String path,
+                   final boolean withBody) throws IOException {
+    final var res = resources.get(path);
+    if (res == null) {
+      send(exchange, 404, null, null);
+      return;
+    }
+
+    exchange.getResponseHeaders().add("ETag", res.etag);
+    if (!withBody) {
+      exchange.getResponseHeaders().add("Content-Type",
+                                        res.contentType);
+      send(exchange, 200, null, null);
+      return;
+    }
+
+    send(exchange, 200, res.body, res.contentType);
+  }
+
+  private void delete(final HttpExchange exchange,
+                      final String path) throws IOException {
+    final var colPath = collectionPath(path);
+    var found = (resources.remove(path) != null) |
+            collections.remove(colPath);
+
+    // Remove anything below a collection
+    found |= resources.keySet().removeIf(p -> p.startsWith(colPath));
+    found |= collections.removeIf(p -> p.startsWith(colPath));
+
+    send(exchange, found ? 204 : 404, null, null);
+  }
+
+  private void multistatus(final HttpExchange exchange,
+                           final String path,
+                           final boolean withData) throws IOException {
+    final var depth = exchange.getRequestHeaders().getFirst("Depth");
+    final var sb = new StringBuilder(1024);
+
+    sb.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n")
+      .append("<D:multistatus xmlns:D=\"DAV:\" ")
+      .append("xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n");
+
+    final var res = resources.get(path);
+    if (res != null) {
+      response(sb, path, res, withData);
+    } else {
+      response(sb, collectionPath(path), null, false);
+
+      if (!"0".equals(depth)) {
+        for (final var child: children(collectionPath(path))) {
+          response(sb, child, resources.get(child), withData);
+        }
+      }
+    }
+
+    final var colPath = collectionPath(path);
+    for (int i = 0; i < syntheticResponses; i++) {
+      response(sb, colPath + "synthetic-" + i + ".ics",
+               new Resource(null, "text/calendar", "\"s" + i + "\""),
+               false);
+    }
+
+    sb.append("</D:multistatus>\n");
+
+    send(exchange, 207, sb.toString(), "text/xml; charset=utf-8");
+  }
+
+  private List<String> children(final String colPath) {
+    final var res = new ArrayList<String>();
+
+    for (final var p: resources.keySet()) {
+      if (p.startsWith(colPath) &&
+              (p.indexOf('/', colPath.length()) < 0)) {
+        res.add(p);
+      }
+    }
+
+    for (final var p: collections) {
+      if (!p.equals(colPath) && p.startsWith(colPath) &&
+              (p.indexOf('/', colPath.length()) == p.length() - 1)) {
+        res.add(p);
+      }
+    }
+
+    return res;
+  }
+
+  private static void response(final StringBuilder sb,
+                               final String href,
+                               final Resource res,
+                               final boolean withData) {
+    sb.append("<D:response><D:href>").append(escape(href))
+      .append("</D:href><D:propstat><D:prop>");
+
+    if (res == null) {
+      sb.append("<D:resourcetype><D:collection/></D:resourcetype>");
+    } else {
+      sb.append("<D:resourcetype/>")
+        .append("<D:getetag>").append(escape(res.etag))
+        .append("</D:getetag>")
+        .append("<D:getcontenttype>").append(escape(res.contentType))
+        .append("</D:getcontenttype>");
+
+      if (withData && (res.body != null)) {
+        sb.append("<C:calendar-data>").append(escape(res.body))
+          .append("</C:calendar-data>");
+      }
+    }
+
+    sb.append("</D:prop><D:status>HTTP/1.1 200 OK</D:status>")
+      .append("</D:propstat></D:response>\n");
+  }
+
+  private static void send(final HttpExchange exchange,
+                           final int status,
+                           final String body,
+                           final String contentType) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+
+    var bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", contentType);
+
+    final var accept = exchange.getRequestHeaders()
+                               .getFirst("Accept-Encoding");
+    if ((accept != null) && accept.contains("gzip") &&
+            (bytes.length >= 1024)) {
+      final var bos = new ByteArrayOutputStream(bytes.length / 4);
+      try (final var gzos = new GZIPOutputStream(bos)) {
+        gzos.write(bytes);
+      }
+      bytes = bos.toByteArray();
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (final var out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static InputStream requestBody(final HttpExchange exchange)
+          throws IOException {
+    final var encoding = exchange.getRequestHeaders()
+                                 .getFirst("Content-Encoding");
+    if ("gzip".equalsIgnoreCase(encoding)) {
+      return new GZIPInputStream(exchange.getRequestBody());
+    }
+
+    return exchange.getRequestBody();
+  }
+
+  private static String collectionPath(final String path) {
+    if (path.endsWith("/")) {
+      return path;
+    }
+
+    return path + "/";
+  }
+
+  private static String escape(final String val) {
+    return val.replace("&", "&amp;")
+              .replace("<", "&lt;")
+              .replace(">", "&gt;");
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
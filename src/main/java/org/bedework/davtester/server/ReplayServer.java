@@ -0,0 +1,209 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.server;
+
+import org.bedework.davtester.server.ExchangeArchive.Entry;
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** Serves recorded responses from an exchange archive on the loopback
+ * interface.
+ *
+ * <p>A request is matched, in order, by its fingerprint (method, uri
+ * and body digest), by method and uri, then by method alone. For each
+ * key the recorded responses are served in the order recorded, the
+ * last being repeated once the others are used up. The method only
+ * match allows a replay where generated values such as uids differ
+ * from those recorded, as long as the tests run in the same order.
+ */
+public class ReplayServer implements Logged {
+  /* Set by the server from the body we send */
+  private static final Set<String> skipHeaders =
+          Set.of("content-length", "transfer-encoding", "connection",
+                 "content-encoding");
+
+  /* An entry is in all three maps - served once unless repeated as
+     the last for a key */
+  private static class Slot {
+    final Entry entry;
+    boolean used;
+
+    Slot(final Entry entry) {
+      this.entry = entry;
+    }
+  }
+
+  private final Map<String, ArrayDeque<Slot>> byFingerprint =
+          new HashMap<>();
+  private final Map<String, ArrayDeque<Slot>> byUri = new HashMap<>();
+  private final Map<String, ArrayDeque<Slot>> byMethod =
+          new HashMap<>();
+
+  private final HttpServer server;
+
+  private int served;
+  private int unmatched;
+
+  /**
+   * @param archive recorded exchanges
+   * @param port to listen on - 0 for any free port
+   * @throws IOException on error
+   */
+  public ReplayServer(final Path archive,
+                      final int port) throws IOException {
+    final var entries = ExchangeArchive.read(archive);
+
+    for (final var entry: entries) {
+      final var slot = new Slot(entry);
+      add(byFingerprint, entry.fingerprint(), slot);
+      add(byUri, entry.method + " " + entry.uri, slot);
+      add(byMethod, entry.method, slot);
+    }
+
+    server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+            0);
+    server.createContext("/", this::handle);
+
+    info("Replaying " + entries.size() + " exchanges from " + archive);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * @return loopback address we are listening on
+   */
+  public String getHost() {
+    return server.getAddress().getAddress().getHostAddress();
+  }
+
+  /**
+   * @return port we are listening on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void stop() {
+    server.stop(0);
+    info("Replay served " + served + " requests, " +
+                 unmatched + " unmatched");
+  }
+
+  private synchronized void handle(final HttpExchange exchange)
+          throws IOException {
+    final String body;
+    try (final var in = exchange.getRequestBody()) {
+      body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    final var method = exchange.getRequestMethod();
+    final var uri = exchange.getRequestURI().toString();
+
+    var entry = next(byFingerprint,
+                     ExchangeArchive.fingerprint(method, uri, body));
+    if (entry == null) {
+      entry = next(byUri, method + " " + uri);
+    }
+    if (entry == null) {
+      entry = next(byMethod, method);
+    }
+
+    if (entry == null) {
+      unmatched++;
+      warn("No recorded response for " + method + " " + uri);
+      exchange.sendResponseHeaders(599, -1);
+      exchange.close();
+      return;
+    }
+
+    served++;
+
+    final var respHeaders = exchange.getResponseHeaders();
+    for (final var hdr: entry.responseHeaders) {
+      if (!skipHeaders.contains(hdr[0].toLowerCase())) {
+        respHeaders.add(hdr[0], hdr[1]);
+      }
+    }
+
+    final byte[] bytes;
+    if ((entry.responseBody == null) || method.equals("HEAD") ||
+            (entry.status == 204) || (entry.status == 304)) {
+      bytes = null;
+    } else {
+      bytes = entry.responseBody.getBytes(StandardCharsets.UTF_8);
+    }
+
+    if ((bytes == null) || (bytes.length == 0)) {
+      exchange.sendResponseHeaders(entry.status, -1);
+    } else {
+      exchange.sendResponseHeaders(entry.status, bytes.length);
+      try (final var out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    }
+
+    exchange.close();
+  }
+
+  private static void add(final Map<String, ArrayDeque<Slot>> map,
+                          final String key,
+                          final Slot slot) {
+    map.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(slot);
+  }
+
+  /* Take the next unused entry but leave the last one to be
+     repeated */
+  private static Entry next(final Map<String, ArrayDeque<Slot>> map,
+                            final String key) {
+    final var queue = map.get(key);
+    if (queue == null) {
+      return null;
+    }
+
+    while ((queue.size() > 1) && queue.peekFirst().used) {
+      queue.removeFirst();
+    }
+
+    final Slot slot;
+    if (queue.size() > 1) {
+      slot = queue.removeFirst();
+    } else {
+      slot = queue.peekFirst();
+    }
+
+    slot.used = true;
+    return slot.entry;
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
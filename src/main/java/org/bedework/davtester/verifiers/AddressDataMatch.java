@@ -23,7 +23,6 @@ import net.fortuna.ical4j.vcard.Property;
 import net.fortuna.ical4j.vcard.VCard;
 import org.apache.http.Header;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -46,13 +45,21 @@ public class AddressDataMatch extends FileDataMatch {
                       final String filepath,
                       final String data) {
     final var filters = args.getStrings("filter");
+    final var propFilters = new PropertyFilters(filters);
 
     final var card = Vcards.parse(respdata);
-    removePropertiesParameters(card, filters);
+    removePropertiesParameters(card, propFilters);
     final var cardStr = card.toString();
 
-    final var dcard = Vcards.parse(data);
-    removePropertiesParameters(dcard, filters);
+    // Not modified after filtering so may be shared
+    final var dcard = parsedData("vcard:" + filters, data,
+                                 d -> {
+                                   final var vc = Vcards.parse(d);
+                                   removePropertiesParameters(vc,
+                                                              propFilters);
+
+                                   return vc;
+                                 });
     final var dcardStr = dcard.toString();
 
     if (!card.equals(dcard)) {
@@ -63,47 +70,28 @@ public class AddressDataMatch extends FileDataMatch {
   }
 
   private void removePropertiesParameters(final VCard card,
-                                          final List<String> filters) {
-    var plist = card.getProperties();
-    var all = new ArrayList<>(plist);
-
-    for (var property: all) {
-      for (var filter: filters) {
-        if (filter.contains(":")) {
-          var split = filter.split(":");
-
-          var propname = split[0];
-          var parameter = split[1];
-          if (pname(property).equals(propname)) {
-            Parameter par = property.getExtendedParameter(parameter);
-
-            if (par != null) {
-              property.getParameters().remove(par);
-            }
-          }
-
-          continue;
-        }
+                                          final PropertyFilters filters) {
+    card.getProperties().removeIf(property -> {
+      final var filter = filters.get(pname(property));
 
-        if (filter.contains("=")) {
-          var split = filter.split("=");
-
-          var propname = split[0];
-          var value = split[1];
+      if (filter == null) {
+        return false;
+      }
 
-          if (pname(property).equals(propname) &&
-                  (property.getValue().equals(value))) {
-            plist.remove(property);
-          }
+      if (filter.excludes(property.getValue())) {
+        return true;
+      }
 
-          continue;
-        }
+      for (final var parName: filter.params) {
+        final Parameter par = property.getExtendedParameter(parName);
 
-        if (pname(property).equals(filter)) {
-          plist.remove(property);
+        if (par != null) {
+          property.getParameters().remove(par);
         }
       }
-    }
+
+      return false;
+    });
   }
 
   private String pname(final Property p) {
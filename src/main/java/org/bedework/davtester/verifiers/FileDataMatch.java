@@ -15,19 +15,22 @@
 */
 package org.bedework.davtester.verifiers;
 
+import org.bedework.davtester.FixtureCache.Fixture;
 import org.bedework.davtester.KeyVals;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 
 import java.util.List;
-
-import static org.bedework.davtester.Utils.fileToString;
+import java.util.function.Function;
 
 /**
  * Abstract class that handles filename or data then calls methods to compare.
  */
 public abstract class FileDataMatch extends Verifier {
+  /* Set when the data came from a file - one verifier per call */
+  private Fixture fixture;
+
   public abstract List<Integer> expectedStatus(final KeyVals args);
 
   public abstract void compare(String ruri,
@@ -65,8 +68,12 @@ public abstract class FileDataMatch extends Verifier {
 
     // read in all data from specified file or use provided data
 
+    fixture = null;
+
     if (filepath != null) {
-      data = fileToString(filepath);
+      // Cached after substitution
+      fixture = manager.fixtures.get(filepath);
+      data = fixture.getData();
 
       if (data == null) {
         append("        Could not read data file");
@@ -75,14 +82,34 @@ public abstract class FileDataMatch extends Verifier {
     } else if (data == null) {
       append("        No file/data to compare response to");
       return result;
+    } else {
+      data = manager.serverInfo.subs(data);
+      data = manager.serverInfo.extrasubs(data);
     }
 
-    data = manager.serverInfo.subs(data);
-    data = manager.serverInfo.extrasubs(data);
-
     compare(ruri, responseHeaders, status, respdata, args,
             filepath, data);
 
     return result;
   }
+
+  /** Parse the expected data. If it came from a file the parsed
+   * object is cached along with the data and the same object is
+   * returned for each call with the same key. It must be copied
+   * before being modified.
+   *
+   * @param key identifies the parse and any filtering
+   * @param data expected data
+   * @param parser to parse and filter the data
+   * @return parsed object
+   */
+  protected <T> T parsedData(final String key,
+                             final String data,
+                             final Function<String, T> parser) {
+    if (fixture == null) {
+      return parser.apply(data);
+    }
+
+    return fixture.getParsed(key, parser);
+  }
 }
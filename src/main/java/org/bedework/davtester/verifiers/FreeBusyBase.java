@@ -18,17 +18,16 @@ package org.bedework.davtester.verifiers;
 import org.bedework.davtester.KeyVals;
 import org.bedework.davtester.ical.Icalendar;
 
+import net.fortuna.ical4j.model.Component;
 import net.fortuna.ical4j.model.Parameter;
 import net.fortuna.ical4j.model.Period;
-import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.component.VFreeBusy;
 import net.fortuna.ical4j.model.parameter.FbType;
 
 import java.text.ParseException;
-import java.util.ArrayList;
 import java.util.List;
 
-import static org.bedework.davtester.Utils.symmetricDiff;
 import static org.bedework.davtester.Utils.throwException;
 
 /**
@@ -36,9 +35,9 @@ import static org.bedework.davtester.Utils.throwException;
  */
 public abstract class FreeBusyBase extends Verifier {
   protected class PeriodsChecker {
-    PeriodList busy;
-    PeriodList tentative;
-    PeriodList unavailable;
+    FreeBusyPeriods busy;
+    FreeBusyPeriods tentative;
+    FreeBusyPeriods unavailable;
 
     Icalendar calendar;
     VFreeBusy fb;
@@ -52,7 +51,7 @@ public abstract class FreeBusyBase extends Verifier {
         return false;
       }
 
-      // Get expected FREEBUSY info
+      // Get expected FREEBUSY info - normalised once for all responses
       busy = getPeriods(args.getStrings("busy"));
       tentative = getPeriods(args.getStrings("tentative"));
       unavailable = getPeriods(args.getStrings("unavailable"));
@@ -67,7 +66,7 @@ public abstract class FreeBusyBase extends Verifier {
       calendar = Icalendar.parseText(respdata);
 
       // Only one component
-      final var comps = calendar.getComponents("VFREEBUSY");
+      final var comps = calendar.cal.getComponents(Component.VFREEBUSY);
       if (comps.size() != 1) {
         append("Wrong number or unexpected components in calendar");
         return false;
@@ -80,11 +79,11 @@ public abstract class FreeBusyBase extends Verifier {
     }
 
     boolean comparePeriods() {
-      final var busyp = new ArrayList<Period>();
-      final var tentativep = new ArrayList<Period>();
-      final var unavailablep = new ArrayList<Period>();
+      final var busyp = new FreeBusyPeriods();
+      final var tentativep = new FreeBusyPeriods();
+      final var unavailablep = new FreeBusyPeriods();
 
-      for (final var fp: fb.getProperties("FREEBUSY")) {
+      for (final var fp: fb.getProperties(Property.FREEBUSY)) {
         final var periods = ((net.fortuna.ical4j.model.property.FreeBusy)fp)
                 .getPeriods();
 
@@ -114,6 +113,10 @@ public abstract class FreeBusyBase extends Verifier {
         }
       }
 
+      busyp.normalise();
+      tentativep.normalise();
+      unavailablep.normalise();
+
       // Set sizes must match
       if (busy.size() != busyp.size()) {
         append("Busy period list sizes do not match.");
@@ -131,38 +134,39 @@ public abstract class FreeBusyBase extends Verifier {
       }
 
       // Compare all periods
-      if (symmetricDiff(busyp, busy).size() != 0) {
-        fmsg("Busy periods do not match: {}",
-             symmetricDiff(busyp, busy));
+      var diff = busyp.symmetricDiff(busy);
+      if (!diff.isEmpty()) {
+        fmsg("Busy periods do not match: %s", diff);
         return false;
       }
 
-      if (symmetricDiff(tentativep, tentative).size() != 0) {
-        append("Busy-tentative periods do not match");
+      diff = tentativep.symmetricDiff(tentative);
+      if (!diff.isEmpty()) {
+        fmsg("Busy-tentative periods do not match: %s", diff);
         return false;
       }
 
-      if (symmetricDiff(unavailablep, unavailable)
-              .size() != 0) {
-        append("Busy-unavailable periods do not match");
+      diff = unavailablep.symmetricDiff(unavailable);
+      if (!diff.isEmpty()) {
+        fmsg("Busy-unavailable periods do not match: %s", diff);
         return false;
       }
 
       return true;
     }
 
-    protected PeriodList getPeriods(final List<String> vals) {
-      final PeriodList pl = new PeriodList();
+    protected FreeBusyPeriods getPeriods(final List<String> vals) {
+      final var res = new FreeBusyPeriods();
 
       for (final var val: vals) {
         try {
-          pl.add(new Period(val));
+          res.add(new Period(val));
         } catch (final ParseException pe) {
           throwException(pe);
         }
       }
 
-      return pl;
+      return res.normalise();
     }
   }
 }
@@ -0,0 +1,146 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.verifiers;
+
+import net.fortuna.ical4j.model.Period;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A set of free-busy periods normalised for comparison: converted to
+ * UTC millis, sorted by start and with overlapping or adjacent
+ * periods merged. Two normalised sets can then be compared in a
+ * single pass.
+ *
+ * <p>Periods are added then normalise is called once before any
+ * comparisons.
+ */
+class FreeBusyPeriods {
+  private static final DateTimeFormatter utcFormat =
+          DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+                           .withZone(ZoneOffset.UTC);
+
+  private long[] starts = new long[8];
+  private long[] ends = new long[8];
+  private int size;
+
+  void add(final Period p) {
+    add(p.getStart().getTime(), p.getEnd().getTime());
+  }
+
+  void addAll(final Iterable<Period> periods) {
+    for (final var p: periods) {
+      add(p);
+    }
+  }
+
+  void add(final long start, final long end) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  /** Sort and merge overlapping or adjacent periods.
+   *
+   * @return this
+   */
+  FreeBusyPeriods normalise() {
+    if (size < 2) {
+      return this;
+    }
+
+    /* Sort starts and ends separately - no boxing. With both sorted,
+       the k-th end closes the merged period once the next start is
+       after it, as the first k+1 periods have all ended by then.
+     */
+    final var sortedStarts = Arrays.copyOf(starts, size);
+    final var sortedEnds = Arrays.copyOf(ends, size);
+    Arrays.sort(sortedStarts);
+    Arrays.sort(sortedEnds);
+
+    final var newStarts = new long[size];
+    final var newEnds = new long[size];
+    int newSize = 0;
+
+    for (int i = 0; i < size; i++) {
+      newStarts[newSize] = sortedStarts[i];
+
+      // Extend over any which overlap or abut
+      while ((i + 1 < size) && (sortedStarts[i + 1] <= sortedEnds[i])) {
+        i++;
+      }
+
+      newEnds[newSize] = sortedEnds[i];
+      newSize++;
+    }
+
+    starts = newStarts;
+    ends = newEnds;
+    size = newSize;
+
+    return this;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Both must be normalised.
+   *
+   * @param that periods to compare
+   * @return periods in one but not the other - empty for a match
+   */
+  List<String> symmetricDiff(final FreeBusyPeriods that) {
+    final var res = new ArrayList<String>();
+
+    int i = 0;
+    int j = 0;
+
+    while ((i < size) || (j < that.size)) {
+      if (j == that.size) {
+        res.add(format(i));
+        i++;
+        continue;
+      }
+
+      if (i == size) {
+        res.add(that.format(j));
+        j++;
+        continue;
+      }
+
+      int cmp = Long.compare(starts[i], that.starts[j]);
+      if (cmp == 0) {
+        cmp = Long.compare(ends[i], that.ends[j]);
+      }
+
+      if (cmp == 0) {
+        i++;
+        j++;
+      } else if (cmp < 0) {
+        res.add(format(i));
+        i++;
+      } else {
+        res.add(that.format(j));
+        j++;
+      }
+    }
+
+    return res;
+  }
+
+  private String format(final int i) {
+    return utcFormat.format(Instant.ofEpochMilli(starts[i])) + "/" +
+            utcFormat.format(Instant.ofEpochMilli(ends[i]));
+  }
+}
@@ -89,19 +89,31 @@ public class IcalendarDataMatch extends FileDataMatch {
     }
 */
     try {
+      final var propFilters = new PropertyFilters(filters);
+
       final var respCalendar = Icalendar.parseText(respdata);
-      removePropertiesParameters(respCalendar,
-                                 filters);
+      removePropertiesParameters(respCalendar, propFilters);
+
+      // Copy - reconcile below may modify it
+      final var dataCalendar = parsedData(
+              "ical:" + filters, data,
+              d -> {
+                final var cal = Icalendar.parseText(d);
+                removePropertiesParameters(cal, propFilters);
+                cal.removeTimeZones();
 
-      final var dataCalendar = Icalendar.parseText(data);
-      removePropertiesParameters(dataCalendar,
-                                 filters);
+                return cal;
+              }).deepCopy();
 
       respCalendar.removeTimeZones();
-      dataCalendar.removeTimeZones();
 
       reconcileRecurrenceOverrides(respCalendar, dataCalendar);
 
+      // Canonical compare - only serialise and diff on a mismatch
+      if (respCalendar.matches(dataCalendar)) {
+        return;
+      }
+
       final var respLines = respCalendar.toLines(/*Calendar.NO_TIMEZONES*/);
       final var dataLines = dataCalendar.toLines(/*Calendar.NO_TIMEZONES*/);
 
@@ -213,7 +225,7 @@ public class IcalendarDataMatch extends FileDataMatch {
                         "X-CALENDARSERVER-ATTENDEE-COMMENT"));
 
   private void removePropertiesParameters(final Object comp,
-                                          final List<String> filters) {
+                                          final PropertyFilters filters) {
     /* why are we setting it to duration - are servers changing the
        representation?
     if (component.getType() == "VEVENT") {
@@ -226,7 +238,6 @@ public class IcalendarDataMatch extends FileDataMatch {
     }
      */
 
-    final var newProps = new ArrayList<Property>();
     final PropertyList<Property> pl;
     Icalendar ical = null;
     Component component = null;
@@ -239,6 +250,8 @@ public class IcalendarDataMatch extends FileDataMatch {
       pl = component.getProperties();
     }
 
+    final var newProps = new ArrayList<Property>(pl.size());
+
     for (final var property: pl) {
       // Always reset DTSTAMP on these properties
       if (attendeeProps.contains(property.getName())) {
@@ -252,37 +265,22 @@ public class IcalendarDataMatch extends FileDataMatch {
         }
       }
 
-      for (final var filter: filters) {
-        if (filter.contains(":")) {
-          final var split = filter.split(":");
-          if (property.getName().equals(split[0])) {
-            final Parameter par = property.getParameter(split[1]);
-            if (par != null) {
-              property.getParameters().remove(par);
-            }
-          }
+      final var filter = filters.get(property.getName());
 
-          newProps.add(property);
-          continue;
+      if (filter != null) {
+        if (filter.excludes(property.getValue())) {
+          continue; // don't preserve
         }
 
-        if (filter.contains("=")) {
-          final var split = filter.split("=");
-          if (property.getName().equals(split[0]) &&
-                  property.getValue().equals(split[1])) {
-            continue; // don't preserve
+        for (final var parName: filter.params) {
+          final Parameter par = property.getParameter(parName);
+          if (par != null) {
+            property.getParameters().remove(par);
           }
-
-          newProps.add(property);
-          continue;
         }
-
-        if (property.getName().equals(filter)) {
-          continue; // don't preserve
-        }
-
-        newProps.add(property);
       }
+
+      newProps.add(property);
     }
 
     final ComponentList<? extends Component> comps;
@@ -19,6 +19,7 @@ import org.bedework.davtester.KeyVals;
 import org.bedework.util.misc.Util;
 import org.bedework.util.xml.tagdefs.CaldavTags;
 
+import net.fortuna.ical4j.model.Component;
 import org.apache.http.Header;
 
 import java.util.List;
@@ -87,7 +88,8 @@ public class PostFreeBusy extends FreeBusyBase {
 
         // Check event count
         if ((events != null) &&
-                (checker.calendar.getComponents("VEVENT").size() != events)) {
+                (checker.calendar.cal.getComponents(Component.VEVENT)
+                                     .size() != events)) {
           append("Number of VEVENTs does not match");
           break;
         }
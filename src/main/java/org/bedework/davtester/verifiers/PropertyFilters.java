@@ -0,0 +1,79 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.verifiers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Property filters used when comparing calendar and vcard data,
+ * compiled into a lookup by property name. Filters have one of the
+ * forms:
+ * <ul>
+ *   <li>NAME - remove the property</li>
+ *   <li>NAME:PARAM - remove the named parameter from the property</li>
+ *   <li>NAME=VALUE - remove the property if it has that value</li>
+ * </ul>
+ */
+class PropertyFilters {
+  static class Filter {
+    /* Remove all occurrences of the property */
+    boolean remove;
+
+    /* Parameters to remove from the property */
+    Set<String> params = Collections.emptySet();
+
+    /* Remove the property if it has one of these values */
+    Set<String> values = Collections.emptySet();
+
+    boolean excludes(final String value) {
+      return remove || values.contains(value);
+    }
+  }
+
+  private final Map<String, Filter> filters = new HashMap<>();
+
+  PropertyFilters(final List<String> filters) {
+    for (final var filter: filters) {
+      // Names cannot contain either separator - the first one wins
+      final var colonPos = filter.indexOf(':');
+      final var eqPos = filter.indexOf('=');
+
+      if ((colonPos >= 0) && ((eqPos < 0) || (colonPos < eqPos))) {
+        final var f = filter(filter.substring(0, colonPos));
+        if (f.params.isEmpty()) {
+          f.params = new HashSet<>();
+        }
+        f.params.add(filter.substring(colonPos + 1));
+        continue;
+      }
+
+      if (eqPos >= 0) {
+        final var f = filter(filter.substring(0, eqPos));
+        if (f.values.isEmpty()) {
+          f.values = new HashSet<>();
+        }
+        f.values.add(filter.substring(eqPos + 1));
+        continue;
+      }
+
+      filter(filter).remove = true;
+    }
+  }
+
+  /**
+   * @param name of property
+   * @return filter or null if property is unaffected
+   */
+  Filter get(final String name) {
+    return filters.get(name);
+  }
+
+  private Filter filter(final String name) {
+    return filters.computeIfAbsent(name, k -> new Filter());
+  }
+}
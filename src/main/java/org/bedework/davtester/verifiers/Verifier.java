@@ -32,16 +32,15 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
 import static java.lang.String.format;
-import static org.bedework.davtester.XmlUtils.children;
 import static org.bedework.davtester.XmlUtils.multiStatusResponse;
 import static org.bedework.davtester.XmlUtils.normalizedString;
-import static org.bedework.util.xml.XmlUtil.hasChildren;
-import static org.bedework.util.xml.XmlUtil.nodeMatches;
 
 /** Base class for verifiers
  *
@@ -147,7 +146,7 @@ public abstract class Verifier implements Logged {
 
   protected Manager manager;
 
-  // Per verify call
+  // Per verify call - Verify makes a new verifier for each
   protected Document doc;
   protected Element docRoot;
   protected VerifyResult result;
@@ -237,58 +236,53 @@ public abstract class Verifier implements Logged {
 
     if (!Util.isEmpty(filters)) {
       // Apply filters
-      for (var filterVal: filters) {
-        var fvals = filterVal.split(",");
-
-        for (var filter: fvals) {
-          var qn = QName.valueOf(filter);
-          removeElement(root, qn);
-          /*
-          var nl = root.getElementsByTagNameNS(qn.getNamespaceURI(),
-                                               qn.getLocalPart());
-          for (var i = 0; i < nl.getLength(); i++) {
-            var node = nl.item(i);
-
-            XmlUtil.clear(node);
-          }
-           */
-        }
-      }
+      removeElements(root, filterNames(filters));
     }
 
     return doc;
   }
 
-  private boolean removeElement(final Element root,
-                                final QName qn) {
-    if (!hasChildren(root)) {
-      return false;
+  /**
+   * @param filters each a comma separated list of element names in
+   *                QName.valueOf form
+   * @return names of elements to filter
+   */
+  protected static Set<QName> filterNames(final List<String> filters) {
+    final var res = new HashSet<QName>();
+
+    if (filters != null) {
+      for (final var filterVal: filters) {
+        for (final var filter: filterVal.split(",")) {
+          res.add(QName.valueOf(filter));
+        }
+      }
     }
 
-    boolean res = false;
-    boolean removed;
-    do {
-      removed = false;
+    return res;
+  }
 
-      for (final var node: children(root)) {
-        if (nodeMatches(node, qn)) {
-          root.removeChild(node);
-          removed = true;
-          break;
-        }
+  /* Remove all descendants of root with one of the given names */
+  private static void removeElements(final Element root,
+                                     final Set<QName> qns) {
+    var node = root.getFirstChild();
 
-        if (removeElement(node, qn)) {
-          removed = true;
-          break;
-        }
-      }
+    while (node != null) {
+      final var next = node.getNextSibling();
+
+      if (node instanceof Element) {
+        final var ns = node.getNamespaceURI();
+        final var qn = new QName(ns == null ? "" : ns,
+                                 node.getLocalName());
 
-      if (removed) {
-        res = true;
+        if (qns.contains(qn)) {
+          root.removeChild(node);
+        } else {
+          removeElements((Element)node, qns);
+        }
       }
-    } while (removed);
 
-    return res;
+      node = next;
+    }
   }
 
   protected String normalizeXML(final String val) {
@@ -44,6 +44,12 @@ public class XmlDataMatch extends FileDataMatch {
                       final String data) {
     final var filters = args.getStrings("filter");
 
+    // Cheap streaming comparison - build and diff the DOMs on a mismatch
+    if (XmlStreamCompare.matches(respdata, data,
+                                 filterNames(filters))) {
+      return;
+    }
+
     final var nrespdata = normalizeXMLData(respdata, filters);
     final var ndata = normalizeXMLData(data, filters);
 
@@ -0,0 +1,193 @@
+/* ********************************************************************
+    Appropriate copyright notice
+*/
+package org.bedework.davtester.verifiers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** Compares two xml documents as streams of normalised events:
+ * element start (namespace resolved name and sorted attributes),
+ * element end and text. Whitespace only text, comments and
+ * processing instructions are dropped as are elements below the root
+ * matching one of the filters. Other text is compared exactly.
+ *
+ * <p>The documents are read in lockstep and the comparison stops at
+ * the first difference. A match here is never more lenient than the
+ * DOM based diff so callers only need that for the details of a
+ * mismatch.
+ */
+class XmlStreamCompare {
+  private static final XMLInputFactory factory;
+
+  static {
+    factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(
+            XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  private static final int startElement = 1;
+  private static final int endElement = 2;
+  private static final int text = 3;
+  private static final int endDocument = 4;
+
+  private static class Canonicaliser {
+    private final XMLStreamReader rdr;
+    private final Set<QName> filters;
+    private int depth;
+
+    Canonicaliser(final String data,
+                  final Set<QName> filters) throws XMLStreamException {
+      rdr = factory.createXMLStreamReader(new StringReader(data));
+      this.filters = filters;
+    }
+
+    /* Advance to the next event we compare. The reader is left
+       positioned on that event.
+     */
+    int next() throws XMLStreamException {
+      while (rdr.hasNext()) {
+        switch (rdr.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            if ((depth > 0) && filters.contains(rdr.getName())) {
+              skipElement();
+              continue;
+            }
+            depth++;
+            return startElement;
+
+          case XMLStreamConstants.END_ELEMENT:
+            depth--;
+            return endElement;
+
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+            if (rdr.isWhiteSpace() ||
+                    rdr.getText().trim().isEmpty()) {
+              continue;
+            }
+            return text;
+
+          default:
+            // Comments, PIs, ignorable whitespace etc.
+        }
+      }
+
+      return endDocument;
+    }
+
+    QName name() {
+      return rdr.getName();
+    }
+
+    String text() {
+      return rdr.getText();
+    }
+
+    List<String> attributes() {
+      final int ct = rdr.getAttributeCount();
+
+      if (ct == 0) {
+        return Collections.emptyList();
+      }
+
+      final var res = new ArrayList<String>(ct);
+      for (int i = 0; i < ct; i++) {
+        res.add(rdr.getAttributeName(i) + "=" +
+                        rdr.getAttributeValue(i));
+      }
+
+      Collections.sort(res);
+
+      return res;
+    }
+
+    void close() {
+      try {
+        rdr.close();
+      } catch (final Throwable ignored) {
+      }
+    }
+
+    private void skipElement() throws XMLStreamException {
+      int level = 1;
+
+      while (level > 0) {
+        final int ev = rdr.next();
+        if (ev == XMLStreamConstants.START_ELEMENT) {
+          level++;
+        } else if (ev == XMLStreamConstants.END_ELEMENT) {
+          level--;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param data1 xml
+   * @param data2 xml
+   * @param filters names of elements to ignore
+   * @return true if both are well-formed and match
+   */
+  static boolean matches(final String data1,
+                         final String data2,
+                         final Set<QName> filters) {
+    Canonicaliser c1 = null;
+    Canonicaliser c2 = null;
+
+    try {
+      c1 = new Canonicaliser(data1, filters);
+      c2 = new Canonicaliser(data2, filters);
+
+      while (true) {
+        final int ev = c1.next();
+
+        if (ev != c2.next()) {
+          return false;
+        }
+
+        switch (ev) {
+          case endDocument:
+            return true;
+
+          case startElement:
+            if (!c1.name().equals(c2.name()) ||
+                    !c1.attributes().equals(c2.attributes())) {
+              return false;
+            }
+            break;
+
+          case text:
+            if (!c1.text().equals(c2.text())) {
+              return false;
+            }
+            break;
+
+          default:
+        }
+      }
+    } catch (final Throwable t) {
+      // Let the DOM comparison report it
+      return false;
+    } finally {
+      if (c1 != null) {
+        c1.close();
+      }
+      if (c2 != null) {
+        c2.close();
+      }
+    }
+  }
+}